@@ -0,0 +1,147 @@
+package carlos.utilities;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Block-compressed format for files of lines.<br/>
+ * Lines are gathered into blocks of up to the block size of uncompressed bytes and every block
+ * is written as an independent GZIP member. A file is therefore a valid multi-member GZIP file:
+ * batches can be appended at any time, and the file can be read with {@link BlockCompression#newReader(Path)}
+ * or any standard GZIP tool.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see WriteBehindQueue
+ */
+public final class BlockCompression implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 2871937361154384305L;
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+    public static final String EXTENSION = ".gz";
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final int blockSize;
+    private final int level;
+
+    /**
+     * @param blockSize maximum amount of uncompressed bytes in each block, unless a single line is longer.
+     * @param level compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION},
+     *              or {@link Deflater#DEFAULT_COMPRESSION}.
+     * @throws IllegalArgumentException if the block size is not positive or the level is not valid.
+     */
+    public BlockCompression(int blockSize, int level) throws IllegalArgumentException {
+        if(blockSize < 1) throw new IllegalArgumentException("blockSize must be greater than 0!");
+        if(level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION))
+            throw new IllegalArgumentException("level must be within [0, 9] or -1!");
+        this.blockSize = blockSize;
+        this.level = level;
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    public int level() {
+        return level;
+    }
+
+    /**
+     * Appends the lines to the file as compressed blocks, creating it if necessary,
+     * and forces them to the storage device.
+     * @param path file the lines are appended to.
+     * @param lines lines to be appended.
+     * @throws IOException if the file could not be written.
+     */
+    public void append(Path path, Collection<String> lines) throws IOException {
+        var deflater = new Deflater(level, true);
+        try (var channel = FileChannel.open(path, CREATE, WRITE, APPEND)) {
+            var out = new BufferedOutputStream(Channels.newOutputStream(channel), STREAM_BUFFER_SIZE);
+            var writer = new BlockWriter(out, deflater);
+            for(var line : lines)
+                writer.write(line.getBytes(StandardCharsets.UTF_8));
+            writer.writeBlock();
+            out.flush();
+            channel.force(false);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Opens a streaming reader over a block-compressed file, decompressing one block at a time.
+     * @param path block-compressed file.
+     * @return reader of the lines in the file.
+     * @throws IOException if the file could not be opened or is not a GZIP file.
+     */
+    public static BufferedReader newReader(Path path) throws IOException {
+        return new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(path, READ), STREAM_BUFFER_SIZE),
+                StandardCharsets.UTF_8), STREAM_BUFFER_SIZE);
+    }
+
+    @Override
+    public String toString() {
+        return "BlockCompression[blockSize=" + blockSize + ", level=" + level + "]";
+    }
+
+    private final class BlockWriter {
+        private final OutputStream out;
+        private final Deflater deflater;
+        private final CRC32 crc = new CRC32();
+        private final byte[] compressed = new byte[STREAM_BUFFER_SIZE];
+        private ByteBuffer block = ByteBuffer.allocate(blockSize);
+
+        BlockWriter(OutputStream out, Deflater deflater) {
+            this.out = out;
+            this.deflater = deflater;
+        }
+
+        void write(byte[] line) throws IOException {
+            int length = line.length + LINE_SEPARATOR.length;
+            if(length > block.remaining()) writeBlock();
+            if(length > block.capacity()) block = ByteBuffer.allocate(length);
+            block.put(line).put(LINE_SEPARATOR);
+        }
+
+        /**
+         * Writes the gathered bytes as one GZIP member: header, raw deflate stream, CRC-32 and size trailer.
+         */
+        void writeBlock() throws IOException {
+            if(block.position() == 0) return;
+            var data = block.array();
+            int length = block.position();
+            crc.reset();
+            crc.update(data, 0, length);
+            deflater.reset();
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            out.write(GZIP_HEADER);
+            while(!deflater.finished())
+                out.write(compressed, 0, deflater.deflate(compressed));
+            writeIntLE((int) crc.getValue());
+            writeIntLE(length);
+            if(block.capacity() > blockSize) block = ByteBuffer.allocate(blockSize);
+            else block.clear();
+        }
+
+        private void writeIntLE(int i) throws IOException {
+            out.write(i);
+            out.write(i >>> 8);
+            out.write(i >>> 16);
+            out.write(i >>> 24);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package carlos.utilities;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter over 64-bit {@link Fingerprint fingerprints}.<br/>
+ * Sized for an expected amount of elements and false positive probability, the bit positions
+ * are derived from the fingerprint itself by double hashing, so no element is hashed twice.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see FingerprintIndex
+ */
+public final class BloomFilter {
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+
+    /**
+     * @param expectedSize amount of elements expected to be added.
+     * @param falsePositiveProbability desired false positive probability once expectedSize elements are added.
+     * @throws IllegalArgumentException if the expected size is not positive or the probability is not within (0, 1).
+     */
+    public BloomFilter(long expectedSize, double falsePositiveProbability) throws IllegalArgumentException {
+        if(expectedSize < 1) throw new IllegalArgumentException("expectedSize must be greater than 0!");
+        if(!(falsePositiveProbability > 0 && falsePositiveProbability < 1))
+            throw new IllegalArgumentException("falsePositiveProbability must be within (0, 1)!");
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-expectedSize * Math.log(falsePositiveProbability) / (ln2 * ln2));
+        int nWords = (int) Math.min((optimalBits + 63) >>> 6, Integer.MAX_VALUE - 8);
+        this.words = new AtomicLongArray(nWords);
+        this.bits = (long) nWords << 6;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expectedSize * ln2));
+    }
+
+    /**
+     * Adds the fingerprint to this filter.
+     * @param fingerprint fingerprint to be added.
+     */
+    public void add(long fingerprint) {
+        long h1 = fingerprint, h2 = Fingerprint.mix(fingerprint) | 1;
+        for(int i = 0; i < hashes; i++, h1 += h2) {
+            long bit = Math.floorMod(h1, bits);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while((current & mask) == 0 && !words.compareAndSet(word, current, current | mask))
+                current = words.get(word);
+        }
+    }
+
+    /**
+     * Tests if the fingerprint might have been added to this filter.
+     * @param fingerprint fingerprint to be tested.
+     * @return false if the fingerprint was definitely never added.
+     */
+    public boolean mightContain(long fingerprint) {
+        long h1 = fingerprint, h2 = Fingerprint.mix(fingerprint) | 1;
+        for(int i = 0; i < hashes; i++, h1 += h2) {
+            long bit = Math.floorMod(h1, bits);
+            if((words.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return heap memory used by the bit array, in bytes.
+     */
+    public long memoryFootprint() {
+        return (long) words.length() << 3;
+    }
+}
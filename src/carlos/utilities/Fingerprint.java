@@ -0,0 +1,60 @@
+package carlos.utilities;
+
+/**
+ * 64-bit fingerprints of character sequences, used wherever a set of {@link String}s
+ * can be replaced by a set of compact hashes.<br/>
+ * FNV-1a over the UTF-16 code units followed by the MurmurHash3 finalizer, so every
+ * bit of the result depends on every character.
+ * The fingerprint <code>0</code> is never produced, it is reserved for empty slots.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see FingerprintSet
+ */
+public final class Fingerprint {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long ZERO_REPLACEMENT = 0x9E3779B97F4A7C15L;
+
+    private Fingerprint() {}
+
+    /**
+     * Computes the fingerprint of the given {@link CharSequence}.
+     * @param s sequence to be fingerprinted.
+     * @return non-zero 64-bit fingerprint.
+     */
+    public static long of(CharSequence s) {
+        return of(s, 0, s.length());
+    }
+
+    /**
+     * Computes the fingerprint of the given region of a {@link CharSequence}.
+     * @param s sequence to be fingerprinted.
+     * @param start start index, inclusive.
+     * @param end end index, exclusive.
+     * @return non-zero 64-bit fingerprint.
+     */
+    public static long of(CharSequence s, int start, int end) {
+        long h = FNV_OFFSET;
+        for(int i = start; i < end; i++)
+            h = (h ^ s.charAt(i)) * FNV_PRIME;
+        return nonZero(mix(h));
+    }
+
+    /**
+     * MurmurHash3 64-bit finalizer.
+     * @param h value to be mixed.
+     * @return mixed value.
+     */
+    public static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    static long nonZero(long h) {
+        return h == 0 ? ZERO_REPLACEMENT : h;
+    }
+}
@@ -0,0 +1,343 @@
+package carlos.utilities;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Exact, two-tier set of 64-bit {@link Fingerprint fingerprints} for sets too large to keep in memory.<br/>
+ * <ul>
+ *     <li>Recent fingerprints live in an in-memory {@link FingerprintSet}, which starts small and grows
+ *     up to the spill threshold.</li>
+ *     <li>Once it holds the spill threshold, it is sorted and written to an immutable run file on disk,
+ *     and its fingerprints are added to an in-memory {@link BloomFilter}, created on the first spill,
+ *     so indexes which never outgrow memory do not allocate it.</li>
+ *     <li>Runs are memory-mapped and binary searched, but only if the {@link BloomFilter} reports a possible hit.</li>
+ *     <li>When there are more than {@link FingerprintIndex#MAX_RUNS} runs, they are merged into one.</li>
+ * </ul>
+ * Spilling and merging happen on a background daemon thread, lookups never wait for disk writes.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see FingerprintSet
+ * @see BloomFilter
+ */
+public final class FingerprintIndex {
+    public static final long DEFAULT_SPILL_THRESHOLD = 3_000_000;
+    private static final int MAX_RUNS = 8;
+    private static final long INITIAL_MEMORY_SIZE = 1 << 14;
+    private static final double BLOOM_FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    private final Path directory;
+    private Path runDirectory;
+    private final long spillThreshold;
+    private final long expectedSize;
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean spilling = new AtomicBoolean();
+    private final AtomicLong size = new AtomicLong();
+    private final ExecutorService background = Executors.newSingleThreadExecutor(r -> {
+        var thread = new Thread(r, "FingerprintIndex-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile FingerprintSet memory;
+    private volatile FingerprintSet spilled;
+    private volatile BloomFilter bloom;
+    private volatile List<Run> runs = List.of();
+    private int runSequence;
+
+    /**
+     * @param directory directory in which a directory of its own is created for the run files on the first spill.
+     * @param expectedSize amount of fingerprints expected over the lifetime of the index, sizes the {@link BloomFilter}.
+     */
+    public FingerprintIndex(Path directory, long expectedSize) {
+        this(directory, expectedSize, DEFAULT_SPILL_THRESHOLD);
+    }
+
+    /**
+     * @param directory directory in which a directory of its own is created for the run files on the first spill,
+     * so indexes sharing it never write to the same files.
+     * @param expectedSize amount of fingerprints expected over the lifetime of the index, sizes the {@link BloomFilter}.
+     * @param spillThreshold amount of fingerprints kept in memory before they are written to disk.
+     * @throws IllegalArgumentException if the expected size or the spill threshold are not positive.
+     */
+    public FingerprintIndex(Path directory, long expectedSize, long spillThreshold) throws IllegalArgumentException {
+        if(expectedSize < 1) throw new IllegalArgumentException("expectedSize must be greater than 0!");
+        if(spillThreshold < 1) throw new IllegalArgumentException("spillThreshold must be greater than 0!");
+        this.directory = directory;
+        this.spillThreshold = spillThreshold;
+        this.expectedSize = expectedSize;
+        this.memory = newMemory();
+    }
+
+    private FingerprintSet newMemory() {
+        return new FingerprintSet(Math.min(spillThreshold, INITIAL_MEMORY_SIZE));
+    }
+
+    /**
+     * Adds the fingerprint to this index.
+     * @param fingerprint fingerprint to be added.
+     * @return true if the fingerprint was not already present.
+     */
+    public boolean add(long fingerprint) {
+        fingerprint = Fingerprint.nonZero(fingerprint);
+        boolean added;
+        swapLock.readLock().lock();
+        try {
+            added = !inSpilled(fingerprint) && !onDisk(fingerprint) && memory.add(fingerprint);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        if(added) {
+            size.incrementAndGet();
+            if(memory.size() >= spillThreshold) scheduleSpill();
+        }
+        return added;
+    }
+
+    /**
+     * Tests if the fingerprint is present in this index.
+     * @param fingerprint fingerprint to be tested.
+     * @return true if present.
+     */
+    public boolean contains(long fingerprint) {
+        fingerprint = Fingerprint.nonZero(fingerprint);
+        swapLock.readLock().lock();
+        try {
+            return memory.contains(fingerprint) || inSpilled(fingerprint) || onDisk(fingerprint);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return amount of fingerprints in this index.
+     */
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * @return memory used by the in-memory tier and the {@link BloomFilter}, in bytes.
+     */
+    public long memoryFootprint() {
+        var s = spilled;
+        var b = bloom;
+        return memory.memoryFootprint() + (s != null ? s.memoryFootprint() : 0) + (b != null ? b.memoryFootprint() : 0);
+    }
+
+    /**
+     * @return disk space used by the run files, in bytes.
+     */
+    public long diskFootprint() {
+        return runs.stream().mapToLong(run -> run.length << 3).sum();
+    }
+
+    /**
+     * The spilled set must be checked before the runs: it is only cleared after its run is published.
+     */
+    private boolean inSpilled(long fingerprint) {
+        var s = spilled;
+        return s != null && s.contains(fingerprint);
+    }
+
+    /**
+     * Runs are only published once their fingerprints are in the {@link BloomFilter}, so it exists if there are any.
+     */
+    private boolean onDisk(long fingerprint) {
+        var current = runs;
+        if(current.isEmpty() || !bloom.mightContain(fingerprint)) return false;
+        for(var run : current)
+            if(run.contains(fingerprint)) return true;
+        return false;
+    }
+
+    private void scheduleSpill() {
+        if(spilling.compareAndSet(false, true))
+            background.execute(this::spill);
+    }
+
+    private void spill() {
+        swapLock.writeLock().lock();
+        try {
+            spilled = memory;
+            memory = newMemory();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        try {
+            var fingerprints = spilled.toArray();
+            Arrays.sort(fingerprints);
+            var run = Run.write(nextRunPath(), fingerprints);
+            if(bloom == null) bloom = new BloomFilter(Math.max(expectedSize, fingerprints.length), BLOOM_FALSE_POSITIVE_PROBABILITY);
+            for(var fingerprint : fingerprints)
+                bloom.add(fingerprint);
+            publish(run);
+            spilled = null;
+            if(runs.size() > MAX_RUNS) compact();
+        } catch (IOException e) {
+            e.printStackTrace();
+            restoreSpilled();
+        } finally {
+            spilling.set(false);
+        }
+    }
+
+    /**
+     * Moves the spilled fingerprints back into memory after a failed write, so none are forgotten.
+     */
+    private void restoreSpilled() {
+        var s = spilled;
+        if(s == null) return;
+        for(var fingerprint : s.toArray())
+            memory.add(fingerprint);
+        spilled = null;
+    }
+
+    private void publish(Run run) {
+        var next = new ArrayList<>(runs);
+        next.add(run);
+        runs = List.copyOf(next);
+    }
+
+    private void compact() throws IOException {
+        var old = runs;
+        var merged = Run.merge(nextRunPath(), old);
+        runs = List.of(merged);
+        for(var run : old)
+            Files.deleteIfExists(run.path);
+    }
+
+    private Path nextRunPath() throws IOException {
+        if(runDirectory == null) {
+            if(!Files.isDirectory(directory)) {
+                Files.createDirectories(directory);
+                directory.toFile().deleteOnExit();
+            }
+            runDirectory = Files.createTempDirectory(directory, "runs-");
+            runDirectory.toFile().deleteOnExit();
+        }
+        var path = runDirectory.resolve("run-" + runSequence++ + ".fp");
+        path.toFile().deleteOnExit();
+        return path;
+    }
+
+    /**
+     * Immutable, sorted run of fingerprints memory-mapped from disk.
+     * Mapped in segments, as a single mapping cannot exceed 2 GB.
+     */
+    private static final class Run {
+        private static final int SEGMENT_SHIFT = 27;
+        private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+        private final Path path;
+        private final long length;
+        private final LongBuffer[] segments;
+
+        private Run(Path path) throws IOException {
+            this.path = path;
+            try (var channel = FileChannel.open(path, READ)) {
+                length = channel.size() >>> 3;
+                segments = new LongBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+                for(int i = 0; i < segments.length; i++) {
+                    long offset = (long) i << SEGMENT_SHIFT;
+                    long longs = Math.min(SEGMENT_MASK + 1, length - offset);
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset << 3, longs << 3)
+                            .order(ByteOrder.nativeOrder()).asLongBuffer();
+                }
+            }
+        }
+
+        static Run write(Path path, long[] sorted) throws IOException {
+            try (var writer = new RunWriter(path)) {
+                for(var fingerprint : sorted)
+                    writer.put(fingerprint);
+            }
+            return new Run(path);
+        }
+
+        static Run merge(Path path, List<Run> runs) throws IOException {
+            var cursors = new long[runs.size()];
+            try (var writer = new RunWriter(path)) {
+                while(true) {
+                    int min = -1;
+                    for(int i = 0; i < cursors.length; i++)
+                        if(cursors[i] < runs.get(i).length
+                                && (min < 0 || runs.get(i).get(cursors[i]) < runs.get(min).get(cursors[min])))
+                            min = i;
+                    if(min < 0) break;
+                    writer.put(runs.get(min).get(cursors[min]++));
+                }
+            }
+            return new Run(path);
+        }
+
+        long get(long index) {
+            return segments[(int) (index >>> SEGMENT_SHIFT)].get((int) (index & SEGMENT_MASK));
+        }
+
+        boolean contains(long fingerprint) {
+            long low = 0, high = length - 1;
+            while(low <= high) {
+                long mid = (low + high) >>> 1;
+                long value = get(mid);
+                if(value < fingerprint) low = mid + 1;
+                else if(value > fingerprint) high = mid - 1;
+                else return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Buffered writer of native order longs, skipping consecutive duplicates.
+     */
+    private static final class RunWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.nativeOrder());
+        private boolean empty = true;
+        private long last;
+
+        RunWriter(Path path) throws IOException {
+            channel = FileChannel.open(path, CREATE_NEW, WRITE);
+        }
+
+        void put(long fingerprint) throws IOException {
+            if(!empty && fingerprint == last) return;
+            if(!buffer.hasRemaining()) drain();
+            buffer.putLong(fingerprint);
+            last = fingerprint;
+            empty = false;
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while(buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
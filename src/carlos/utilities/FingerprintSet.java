@@ -0,0 +1,172 @@
+package carlos.utilities;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Concurrent, grow-only set of 64-bit {@link Fingerprint fingerprints} stored off-heap.<br/>
+ * Open addressing with linear probing over a direct {@link ByteBuffer}, 8 bytes per slot.
+ * Insertions are lock-free compare-and-set operations on the slots, the table only takes
+ * an exclusive lock while doubling in size once it is {@link FingerprintSet#MAX_LOAD} full.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see Fingerprint
+ */
+public final class FingerprintSet {
+    private static final VarHandle SLOT = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final double MAX_LOAD = 0.75;
+    private static final int MAX_CAPACITY = 1 << 27;
+    private static final long EMPTY = 0L;
+
+    private final ReadWriteLock resizeLock = new ReentrantReadWriteLock();
+    private final AtomicLong size = new AtomicLong();
+    private volatile ByteBuffer table;
+    private volatile int mask;
+
+    /**
+     * Creates a {@link FingerprintSet} with room for about a quarter million fingerprints before the first resize.
+     */
+    public FingerprintSet() {
+        this(1 << 18);
+    }
+
+    /**
+     * @param expectedSize amount of fingerprints the set should hold without resizing.
+     * @throws IllegalArgumentException if the expected size is negative.
+     */
+    public FingerprintSet(long expectedSize) throws IllegalArgumentException {
+        if(expectedSize < 0) throw new IllegalArgumentException("expectedSize cannot be negative!");
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Adds the fingerprint to this set.
+     * @param fingerprint non-zero fingerprint, zero is remapped like in {@link Fingerprint}.
+     * @return true if the fingerprint was not already present.
+     * @throws IllegalStateException if the set cannot grow any further.
+     */
+    public boolean add(long fingerprint) throws IllegalStateException {
+        fingerprint = Fingerprint.nonZero(fingerprint);
+        boolean added;
+        long newSize = 0;
+        resizeLock.readLock().lock();
+        try {
+            if(added = insert(table, mask, fingerprint))
+                newSize = size.incrementAndGet();
+        } finally {
+            resizeLock.readLock().unlock();
+        }
+        if(newSize > threshold())
+            grow();
+        return added;
+    }
+
+    /**
+     * Tests if the fingerprint is present in this set.
+     * @param fingerprint fingerprint to be tested.
+     * @return true if present.
+     */
+    public boolean contains(long fingerprint) {
+        fingerprint = Fingerprint.nonZero(fingerprint);
+        resizeLock.readLock().lock();
+        try {
+            var t = table;
+            int m = mask;
+            for(int i = slot(fingerprint, m); ; i = (i + 1) & m) {
+                long current = (long) SLOT.getVolatile(t, i << 3);
+                if(current == fingerprint) return true;
+                if(current == EMPTY) return false;
+            }
+        } finally {
+            resizeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return amount of fingerprints in this set.
+     */
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * @return off-heap memory currently reserved by this set, in bytes.
+     */
+    public long memoryFootprint() {
+        return (long) table.capacity();
+    }
+
+    /**
+     * Copies all fingerprints into a new array in no particular order.
+     * @return fingerprints contained in this set.
+     */
+    public long[] toArray() {
+        resizeLock.writeLock().lock();
+        try {
+            var result = new long[(int) size.get()];
+            int n = 0;
+            for(int i = 0; i <= mask; i++) {
+                long current = (long) SLOT.get(table, i << 3);
+                if(current != EMPTY) result[n++] = current;
+            }
+            return result;
+        } finally {
+            resizeLock.writeLock().unlock();
+        }
+    }
+
+    private static boolean insert(ByteBuffer t, int m, long fingerprint) {
+        int i = slot(fingerprint, m);
+        while(true) {
+            long current = (long) SLOT.getVolatile(t, i << 3);
+            if(current == fingerprint) return false;
+            if(current == EMPTY) {
+                if(SLOT.compareAndSet(t, i << 3, EMPTY, fingerprint)) return true;
+                continue;
+            }
+            i = (i + 1) & m;
+        }
+    }
+
+    private void grow() throws IllegalStateException {
+        resizeLock.writeLock().lock();
+        try {
+            if(size.get() <= threshold()) return;
+            int capacity = mask + 1;
+            if(capacity >= MAX_CAPACITY)
+                throw new IllegalStateException("FingerprintSet cannot hold more than " + threshold() + " fingerprints");
+            var old = table;
+            int oldMask = mask;
+            allocate(capacity << 1);
+            for(int i = 0; i <= oldMask; i++) {
+                long current = (long) SLOT.get(old, i << 3);
+                if(current != EMPTY) insert(table, mask, current);
+            }
+        } finally {
+            resizeLock.writeLock().unlock();
+        }
+    }
+
+    private void allocate(int capacity) {
+        table = ByteBuffer.allocateDirect(capacity << 3).order(ByteOrder.nativeOrder());
+        mask = capacity - 1;
+    }
+
+    private long threshold() {
+        return (long) ((mask + 1) * MAX_LOAD);
+    }
+
+    private static int slot(long fingerprint, int m) {
+        return (int) (fingerprint ^ (fingerprint >>> 32)) & m;
+    }
+
+    private static int capacityFor(long expectedSize) {
+        long capacity = Long.highestOneBit(Math.max((long) (expectedSize / MAX_LOAD), 16) - 1) << 1;
+        return (int) Math.min(capacity, MAX_CAPACITY);
+    }
+}
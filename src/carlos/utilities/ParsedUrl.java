@@ -0,0 +1,282 @@
+package carlos.utilities;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Absolute http or https url parsed once into the offsets of its parts, without regex.<br/>
+ * Hosts are interned in a table shared by the whole JVM: every {@link Host} is lowercased once
+ * and knows its registrable domain, so hosts and sites of urls are compared without re-parsing their strings.
+ * The table holds up to {@link ParsedUrl#MAX_INTERNED_HOSTS} hosts and is cleared when full,
+ * as most links of a page share few hosts.<br/>
+ * The registrable domain is approximated without a public suffix list: the last two labels of the host,
+ * or the last three when a two letter country code follows a generic second level label, e.g. <code>bbc.co.uk</code>.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see ParsedUrl.Host
+ */
+public final class ParsedUrl {
+    public static final int MAX_INTERNED_HOSTS = 4096;
+    private static final Map<String, Host> HOSTS = new ConcurrentHashMap<>();
+    private static final int MAX_PORT_LENGTH = 5;
+    private static final Set<String> GENERIC_SECOND_LEVELS =
+            Set.of("ac", "co", "com", "edu", "go", "gob", "gov", "mil", "ne", "net", "nic", "or", "org");
+
+    private final String url;
+    private final boolean secure;
+    private final int hostStart;
+    private final int hostEnd;
+    private final int pathStart;
+    private final int queryStart;
+    private final int fragmentStart;
+    private final Host host;
+
+    private ParsedUrl(String url, boolean secure, int hostStart, int hostEnd,
+                      int pathStart, int queryStart, int fragmentStart, Host host) {
+        this.url = url;
+        this.secure = secure;
+        this.hostStart = hostStart;
+        this.hostEnd = hostEnd;
+        this.pathStart = pathStart;
+        this.queryStart = queryStart;
+        this.fragmentStart = fragmentStart;
+        this.host = host;
+    }
+
+    /**
+     * @param url absolute http or https url.
+     * @return the parsed url.
+     * @throws IllegalArgumentException if the url is not an absolute http or https url.
+     */
+    public static ParsedUrl parse(String url) throws IllegalArgumentException {
+        var parsed = tryParse(url);
+        if(parsed == null) throw new IllegalArgumentException(url + " is not a valid url.");
+        return parsed;
+    }
+
+    /**
+     * @param url url to be parsed.
+     * @return the parsed url, null if it is not an absolute http or https url.
+     */
+    public static ParsedUrl tryParse(String url) {
+        int schemeEnd = url.indexOf("://");
+        boolean secure;
+        if(schemeEnd == 4 && url.regionMatches(true, 0, "http", 0, 4)) secure = false;
+        else if(schemeEnd == 5 && url.regionMatches(true, 0, "https", 0, 5)) secure = true;
+        else return null;
+        int length = url.length();
+        int authorityStart = schemeEnd + 3;
+        int pathStart = authorityStart;
+        while(pathStart < length && "/?#".indexOf(url.charAt(pathStart)) < 0)
+            pathStart++;
+        int at = url.lastIndexOf('@', pathStart - 1);
+        int hostStart = at >= authorityStart ? at + 1 : authorityStart;
+        int hostEnd = hostEnd(url, hostStart, pathStart);
+        if(hostEnd <= hostStart || pathStart - hostEnd > MAX_PORT_LENGTH + 1) return null;
+        for(int i = hostEnd + 1; i < pathStart; i++)
+            if(url.charAt(i) < '0' || url.charAt(i) > '9') return null;
+        int fragmentStart = url.indexOf('#', pathStart);
+        if(fragmentStart < 0) fragmentStart = length;
+        int queryStart = url.indexOf('?', pathStart, fragmentStart);
+        if(queryStart < 0) queryStart = fragmentStart;
+        return new ParsedUrl(url, secure, hostStart, hostEnd, pathStart, queryStart, fragmentStart,
+                Host.of(url, hostStart, hostEnd));
+    }
+
+    /**
+     * @return end of the host starting at the given index, -1 if it contains characters not allowed in a host.
+     */
+    private static int hostEnd(String url, int hostStart, int authorityEnd) {
+        if(hostStart < authorityEnd && url.charAt(hostStart) == '[') {
+            int end = url.indexOf(']', hostStart, authorityEnd);
+            if(end < 0) return -1;
+            end++;
+            return end == authorityEnd || url.charAt(end) == ':' ? end : -1;
+        }
+        for(int i = hostStart; i < authorityEnd; i++) {
+            char c = url.charAt(i);
+            if(c == ':') return i;
+            if(!(c >= 'a' && c <= 'z') && !(c >= 'A' && c <= 'Z') && !(c >= '0' && c <= '9')
+                    && c != '-' && c != '.' && c != '_')
+                return -1;
+        }
+        return authorityEnd;
+    }
+
+    public String url() {
+        return url;
+    }
+
+    /**
+     * @return "https" or "http".
+     */
+    public String scheme() {
+        return secure ? "https" : "http";
+    }
+
+    public boolean isSecure() {
+        return secure;
+    }
+
+    public Host host() {
+        return host;
+    }
+
+    /**
+     * @return explicit port of the url, or the default port of its scheme.
+     */
+    public int port() {
+        if(hostEnd == pathStart || hostEnd + 1 == pathStart) return secure ? 443 : 80;
+        return Integer.parseInt(url, hostEnd + 1, pathStart, 10);
+    }
+
+    /**
+     * @return true if the url names a port, even if it is the default one.
+     */
+    public boolean hasExplicitPort() {
+        return hostEnd + 1 < pathStart;
+    }
+
+    /**
+     * @return index at which the host starts, after any user info.
+     */
+    public int hostStart() {
+        return hostStart;
+    }
+
+    /**
+     * @return index following the host, at which the port starts if there is one.
+     */
+    public int hostEnd() {
+        return hostEnd;
+    }
+
+    /**
+     * @return index at which the path starts, which equals {@link ParsedUrl#queryStart()} if the path is empty.
+     */
+    public int pathStart() {
+        return pathStart;
+    }
+
+    /**
+     * @return index of the '?' starting the query, {@link ParsedUrl#fragmentStart()} if there is no query.
+     */
+    public int queryStart() {
+        return queryStart;
+    }
+
+    /**
+     * @return index of the '#' starting the fragment, the length of the url if there is no fragment.
+     */
+    public int fragmentStart() {
+        return fragmentStart;
+    }
+
+    /**
+     * @return path of the url, "/" if it is empty.
+     */
+    public String path() {
+        return pathStart == queryStart ? "/" : url.substring(pathStart, queryStart);
+    }
+
+    /**
+     * @return query of the url without the '?', null if there is none.
+     */
+    public String query() {
+        return queryStart == fragmentStart ? null : url.substring(queryStart + 1, fragmentStart);
+    }
+
+    /**
+     * @param other parsed url.
+     * @return true if both urls belong to the same registrable domain.
+     */
+    public boolean isSameSite(ParsedUrl other) {
+        return host.domain().equals(other.host.domain());
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+
+    /**
+     * Interned, lowercased host without a trailing dot. Hosts are equal if their names are,
+     * and are usually the same instance, unless the table was cleared in between.
+     */
+    public static final class Host {
+        private final String name;
+        private final Host domain;
+
+        /**
+         * @param domain registrable domain of the host, null if the host is one.
+         */
+        private Host(String name, Host domain) {
+            this.name = name;
+            this.domain = domain;
+        }
+
+        /**
+         * @param host host name, compared ignoring case.
+         * @return the interned {@link Host} of the name.
+         */
+        public static Host of(String host) {
+            return of(host, 0, host.length());
+        }
+
+        private static Host of(String s, int start, int end) {
+            if(end > start && s.charAt(end - 1) == '.') end--;
+            var name = s.substring(start, end).toLowerCase(Locale.ROOT);
+            var host = HOSTS.get(name);
+            if(host != null) return host;
+            var domainName = registrableDomain(name);
+            var domain = domainName.equals(name) ? null : of(domainName);
+            if(HOSTS.size() >= MAX_INTERNED_HOSTS) HOSTS.clear();
+            return HOSTS.computeIfAbsent(name, n -> new Host(n, domain));
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /**
+         * @return the registrable domain this host belongs to, itself if it is one.
+         */
+        public Host domain() {
+            return domain == null ? this : domain;
+        }
+
+        /**
+         * @return amount of hosts currently interned, at most {@link ParsedUrl#MAX_INTERNED_HOSTS}.
+         */
+        public static int count() {
+            return HOSTS.size();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof Host other && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+
+        private static String registrableDomain(String host) {
+            if(host.startsWith("[") || host.chars().allMatch(c -> c == '.' || (c >= '0' && c <= '9'))) return host;
+            int last = host.lastIndexOf('.');
+            int second = last > 0 ? host.lastIndexOf('.', last - 1) : -1;
+            if(second < 0) return host;
+            if(host.length() - last - 1 == 2 && GENERIC_SECOND_LEVELS.contains(host.substring(second + 1, last)))
+                return host.substring(host.lastIndexOf('.', second - 1) + 1);
+            return host.substring(second + 1);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package carlos.utilities;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Binary, length-prefixed record files with a sparse offset index, for random access to saved elements.<br/>
+ * Record layout: <code>[int length][long url id][long timestamp][short parser length][parser UTF-8]
+ * [element UTF-8]</code>, length being the amount of bytes following it.<br/>
+ * The index lives next to the data file, with {@link RecordFile#INDEX_EXTENSION} appended to its name,
+ * and holds <code>[long record number][long offset][long timestamp]</code> entries for the first record
+ * of every appended batch and every {@link RecordFile#INDEX_INTERVAL}th record.
+ * Batches are sorted by timestamp before they are written, so a file whose batches are appended
+ * in time order is sorted by timestamp as a whole.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see RecordFile.Reader
+ */
+public final class RecordFile {
+    public static final String EXTENSION = ".rec";
+    public static final String INDEX_EXTENSION = ".idx";
+    public static final int INDEX_INTERVAL = 1024;
+    private static final int FIXED_LENGTH = 8 + 8 + 2;
+    private static final int INDEX_ENTRY_SIZE = 24;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private RecordFile() {}
+
+    /**
+     * Saved element along with where and when it was found.
+     * @param element parsed element.
+     * @param urlId {@link Fingerprint} of the url of the page the element was parsed from, 0 if unknown.
+     * @param timestamp milliseconds since the epoch at which the element was parsed.
+     * @param parser name of the parser which parsed the element.
+     */
+    public record Record(String element, long urlId, long timestamp, String parser) {}
+
+    /**
+     * Appends the records, sorted by timestamp, to the file and their index entries to its index,
+     * creating both if necessary, and forces them to the storage device.
+     * @param path record file.
+     * @param records records to be appended.
+     * @throws IOException if the file or its index could not be written.
+     */
+    public static void append(Path path, Collection<Record> records) throws IOException {
+        if(records.isEmpty()) return;
+        var sorted = new ArrayList<>(records);
+        sorted.sort(Comparator.comparingLong(Record::timestamp));
+        try (var data = FileChannel.open(path, CREATE, READ, WRITE);
+             var index = FileChannel.open(indexOf(path), CREATE, READ, WRITE)) {
+            long number = recordCount(data, index);
+            long offset = data.size();
+            data.position(offset);
+            index.position(index.size() - index.size() % INDEX_ENTRY_SIZE);
+            var dataOut = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(data), BUFFER_SIZE));
+            var indexOut = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(index), BUFFER_SIZE));
+            boolean first = true;
+            for(var record : sorted) {
+                if(first || number % INDEX_INTERVAL == 0) {
+                    indexOut.writeLong(number);
+                    indexOut.writeLong(offset);
+                    indexOut.writeLong(record.timestamp());
+                    first = false;
+                }
+                offset += write(dataOut, record);
+                number++;
+            }
+            dataOut.flush();
+            indexOut.flush();
+            data.force(false);
+            index.force(false);
+        }
+    }
+
+    /**
+     * Opens the record file for random access.
+     * @param path record file.
+     * @return reader of the file.
+     * @throws IOException if the file or its index could not be opened.
+     */
+    public static Reader open(Path path) throws IOException {
+        return new Reader(path);
+    }
+
+    public static Path indexOf(Path path) {
+        return path.resolveSibling(path.getFileName() + INDEX_EXTENSION);
+    }
+
+    private static int write(DataOutputStream out, Record record) throws IOException {
+        var parser = record.parser().getBytes(StandardCharsets.UTF_8);
+        var element = record.element().getBytes(StandardCharsets.UTF_8);
+        int length = FIXED_LENGTH + parser.length + element.length;
+        out.writeInt(length);
+        out.writeLong(record.urlId());
+        out.writeLong(record.timestamp());
+        out.writeShort(parser.length);
+        out.write(parser);
+        out.write(element);
+        return 4 + length;
+    }
+
+    /**
+     * Counts the records of a file from its last index entry, scanning at most one interval of records.
+     */
+    private static long recordCount(FileChannel data, FileChannel index) throws IOException {
+        long entries = index.size() / INDEX_ENTRY_SIZE;
+        if(entries == 0) return 0;
+        var entry = ByteBuffer.allocate(16);
+        readFully(index, entry, (entries - 1) * INDEX_ENTRY_SIZE);
+        long number = entry.getLong(0), offset = entry.getLong(8);
+        var length = ByteBuffer.allocate(4);
+        for(long size = data.size(); offset < size; number++) {
+            readFully(data, length.clear(), offset);
+            offset += 4 + length.getInt(0);
+        }
+        return number;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining())
+            if(channel.read(buffer, position + buffer.position()) < 0) throw new IOException("unexpected end of file");
+    }
+
+    /**
+     * Memory-mapped reader of a record file, finds any record or time range through the index
+     * and scans at most {@link RecordFile#INDEX_INTERVAL} records to reach it.<br/>
+     * Files are mapped in segments, as a single mapping cannot exceed 2 GB.
+     */
+    public static final class Reader implements AutoCloseable {
+        private static final int SEGMENT_SHIFT = 30;
+        private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+        private final MappedByteBuffer[] segments;
+        private final long length;
+        private final long[] numbers;
+        private final long[] offsets;
+        private final long[] timestamps;
+        private final long size;
+
+        private Reader(Path path) throws IOException {
+            try (var data = FileChannel.open(path, READ)) {
+                length = data.size();
+                segments = new MappedByteBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+                for(int i = 0; i < segments.length; i++) {
+                    long position = (long) i << SEGMENT_SHIFT;
+                    segments[i] = data.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_MASK + 1, length - position));
+                }
+            }
+            var index = ByteBuffer.wrap(Files.readAllBytes(indexOf(path)));
+            int entries = index.capacity() / INDEX_ENTRY_SIZE;
+            numbers = new long[entries];
+            offsets = new long[entries];
+            timestamps = new long[entries];
+            for(int i = 0; i < entries; i++) {
+                numbers[i] = index.getLong();
+                offsets[i] = index.getLong();
+                timestamps[i] = index.getLong();
+            }
+            long count = entries > 0 ? numbers[entries - 1] : 0;
+            for(long offset = entries > 0 ? offsets[entries - 1] : length; offset < length; count++)
+                offset += 4 + getInt(offset);
+            size = count;
+        }
+
+        /**
+         * @return amount of records in the file.
+         */
+        public long size() {
+            return size;
+        }
+
+        /**
+         * Retrieves the record with the given number.
+         * @param n number of the record, starting from 0.
+         * @return the record.
+         * @throws IndexOutOfBoundsException if there is no such record.
+         */
+        public Record get(long n) throws IndexOutOfBoundsException {
+            if(n < 0 || n >= size) throw new IndexOutOfBoundsException("record " + n + " of " + size);
+            int entry = floorEntry(numbers, n);
+            long offset = offsets[entry];
+            for(long i = numbers[entry]; i < n; i++)
+                offset += 4 + getInt(offset);
+            return read(offset);
+        }
+
+        /**
+         * Retrieves every record whose timestamp is within the given range,
+         * assuming the file is sorted by timestamp.
+         * @param from milliseconds since the epoch, inclusive.
+         * @param to milliseconds since the epoch, exclusive.
+         * @return records within the range, in file order.
+         */
+        public List<Record> range(long from, long to) {
+            var records = new ArrayList<Record>();
+            if(numbers.length == 0) return records;
+            int entry = floorEntry(timestamps, from - 1);
+            for(long offset = offsets[entry]; offset < length; offset += 4 + getInt(offset)) {
+                long timestamp = getLong(offset + 12);
+                if(timestamp >= to) break;
+                if(timestamp >= from) records.add(read(offset));
+            }
+            return records;
+        }
+
+        @Override
+        public void close() {
+            for(int i = 0; i < segments.length; i++)
+                segments[i] = null;
+        }
+
+        /**
+         * @return index of the last entry whose value is less than or equal to the key, 0 if there is none.
+         */
+        private static int floorEntry(long[] values, long key) {
+            int low = 0, high = values.length - 1, floor = 0;
+            while(low <= high) {
+                int mid = (low + high) >>> 1;
+                if(values[mid] <= key) {
+                    floor = mid;
+                    low = mid + 1;
+                }
+                else high = mid - 1;
+            }
+            return floor;
+        }
+
+        private Record read(long offset) {
+            int recordLength = getInt(offset);
+            long urlId = getLong(offset + 4);
+            long timestamp = getLong(offset + 12);
+            int parserLength = getShort(offset + 20) & 0xffff;
+            var parser = new byte[parserLength];
+            get(offset + 22, parser);
+            var element = new byte[recordLength - FIXED_LENGTH - parserLength];
+            get(offset + 22 + parserLength, element);
+            return new Record(new String(element, StandardCharsets.UTF_8), urlId, timestamp,
+                    new String(parser, StandardCharsets.UTF_8));
+        }
+
+        private int getInt(long position) {
+            var segment = segments[(int) (position >>> SEGMENT_SHIFT)];
+            int start = (int) (position & SEGMENT_MASK);
+            if(start + 4 <= segment.limit()) return segment.getInt(start);
+            var bytes = new byte[4];
+            get(position, bytes);
+            return ByteBuffer.wrap(bytes).getInt();
+        }
+
+        private short getShort(long position) {
+            var bytes = new byte[2];
+            get(position, bytes);
+            return ByteBuffer.wrap(bytes).getShort();
+        }
+
+        private long getLong(long position) {
+            var segment = segments[(int) (position >>> SEGMENT_SHIFT)];
+            int start = (int) (position & SEGMENT_MASK);
+            if(start + 8 <= segment.limit()) return segment.getLong(start);
+            var bytes = new byte[8];
+            get(position, bytes);
+            return ByteBuffer.wrap(bytes).getLong();
+        }
+
+        /**
+         * Copies bytes starting at the given position, across a segment boundary if necessary.
+         */
+        private void get(long position, byte[] dst) {
+            int copied = 0;
+            while(copied < dst.length) {
+                var segment = segments[(int) ((position + copied) >>> SEGMENT_SHIFT)];
+                int start = (int) ((position + copied) & SEGMENT_MASK);
+                int n = Math.min(dst.length - copied, segment.limit() - start);
+                segment.get(start, dst, copied, n);
+                copied += n;
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package carlos.utilities;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.regex.Pattern;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Disk-backed FIFO queue of {@link String}s stored in fixed-size, memory-mapped segment files.<br/>
+ * Strings are appended to the last segment and read sequentially from the first one,
+ * a segment file is deleted as soon as it has been fully consumed.
+ * Both operations cost O(length of the string) no matter how many strings are queued.<br/>
+ * Segment layout: <code>[int write position][int read position]</code> header followed by
+ * <code>[int length][UTF-8 bytes]</code> records. The header is updated on every operation,
+ * so a queue reopened on the same directory continues where it left off.
+ * @author Carlos Milkovic
+ * @version 1.0
+ */
+public final class SegmentedQueue {
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final int HEADER_SIZE = 8;
+    private static final int WRITE_POSITION = 0;
+    private static final int READ_POSITION = 4;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.q");
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean deleteOnExit;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long size;
+    private long nextSequence;
+
+    /**
+     * Opens the queue stored in the given directory, creating it if necessary.
+     * @param directory directory holding the segment files.
+     * @param segmentSize size of each segment file in bytes.
+     * @param deleteOnExit true if the segment files should not outlive the JVM.
+     * @throws IOException if existing segments could not be opened.
+     * @throws IllegalArgumentException if the segment size cannot hold a single record.
+     */
+    public SegmentedQueue(Path directory, int segmentSize, boolean deleteOnExit) throws IOException, IllegalArgumentException {
+        if(segmentSize <= HEADER_SIZE + 4) throw new IllegalArgumentException("segmentSize is too small!");
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.deleteOnExit = deleteOnExit;
+        if(Files.isDirectory(directory)) reopen();
+    }
+
+    /**
+     * Appends the string to the tail of the queue.
+     * @param s string to be appended.
+     * @throws UncheckedIOException if a new segment could not be created.
+     * @throws IllegalArgumentException if the encoded string does not fit in a segment.
+     */
+    public synchronized void add(String s) throws UncheckedIOException, IllegalArgumentException {
+        var bytes = s.getBytes(StandardCharsets.UTF_8);
+        int recordSize = 4 + bytes.length;
+        if(recordSize > segmentSize - HEADER_SIZE)
+            throw new IllegalArgumentException("record of " + bytes.length + " bytes does not fit in a segment");
+        var tail = segments.peekLast();
+        if(tail == null || tail.write + recordSize > segmentSize)
+            segments.addLast(tail = newSegment());
+        tail.buffer.putInt(tail.write, bytes.length);
+        tail.buffer.put(tail.write + 4, bytes);
+        tail.buffer.putInt(WRITE_POSITION, tail.write += recordSize);
+        size++;
+    }
+
+    /**
+     * Retrieves and removes the head of the queue.
+     * @return the head, null if the queue is empty.
+     */
+    public synchronized String poll() {
+        var head = segments.peekFirst();
+        while(head != null && head.read == head.write) {
+            if(head == segments.peekLast()) return null;
+            delete(segments.pollFirst());
+            head = segments.peekFirst();
+        }
+        if(head == null) return null;
+        int length = head.buffer.getInt(head.read);
+        var bytes = new byte[length];
+        head.buffer.get(head.read + 4, bytes);
+        head.buffer.putInt(READ_POSITION, head.read += 4 + length);
+        size--;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Moves up to max strings from the head of this queue to the given collection.
+     * @param c collection the strings are added to.
+     * @param max maximum amount of strings to be moved.
+     * @return amount of strings moved.
+     */
+    public synchronized int drainTo(Collection<String> c, int max) {
+        int n = 0;
+        String s;
+        while(n < max && (s = poll()) != null) {
+            c.add(s);
+            n++;
+        }
+        return n;
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Forces all segments to be written to the storage device.
+     */
+    public synchronized void force() {
+        for(var segment : segments)
+            segment.buffer.force();
+    }
+
+    /**
+     * Deletes every segment file of this queue.
+     */
+    public synchronized void clear() {
+        while(!segments.isEmpty())
+            delete(segments.pollFirst());
+        size = 0;
+    }
+
+    private Segment newSegment() throws UncheckedIOException {
+        try {
+            if(!Files.isDirectory(directory)) {
+                Files.createDirectories(directory);
+                if(deleteOnExit) directory.toFile().deleteOnExit();
+            }
+            var path = directory.resolve("segment-" + nextSequence++ + ".q");
+            if(deleteOnExit) path.toFile().deleteOnExit();
+            var segment = new Segment(path);
+            segment.buffer.putInt(WRITE_POSITION, HEADER_SIZE);
+            segment.buffer.putInt(READ_POSITION, HEADER_SIZE);
+            segment.write = segment.read = HEADER_SIZE;
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void reopen() throws IOException {
+        try (var files = Files.list(directory)) {
+            var paths = files.filter(p -> SEGMENT_NAME.matcher(p.getFileName().toString()).matches())
+                    .sorted(Comparator.comparingLong(SegmentedQueue::sequenceOf))
+                    .toList();
+            for(var path : paths) {
+                var segment = new Segment(path);
+                segment.write = segment.buffer.getInt(WRITE_POSITION);
+                segment.read = segment.buffer.getInt(READ_POSITION);
+                for(int p = segment.read; p < segment.write; p += 4 + segment.buffer.getInt(p))
+                    size++;
+                segments.addLast(segment);
+                nextSequence = sequenceOf(path) + 1;
+            }
+        }
+    }
+
+    private static long sequenceOf(Path path) {
+        var m = SEGMENT_NAME.matcher(path.getFileName().toString());
+        return m.matches() ? Long.parseLong(m.group(1)) : -1;
+    }
+
+    /**
+     * Deletes a consumed segment. Mapped files cannot be deleted on some platforms
+     * until the mapping is garbage collected, those are deleted on exit instead.
+     */
+    private void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            segment.path.toFile().deleteOnExit();
+        }
+    }
+
+    private final class Segment {
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int write;
+        private int read;
+
+        private Segment(Path path) throws IOException {
+            this.path = path;
+            try (var channel = FileChannel.open(path, CREATE, READ, WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package carlos.utilities;
+
+/**
+ * Streaming 64-bit SimHash of a text, for finding near-duplicate pages.<br/>
+ * The text is split into words (runs of letters and digits, compared ignoring case), and every run of
+ * {@link SimHash#SHINGLE_WORDS} consecutive words, a shingle, is hashed. Each bit of the SimHash is set if
+ * most shingle hashes have it set, so texts sharing most of their shingles get SimHashes which differ in few bits.<br/>
+ * Words are hashed as they are read, no word or shingle is ever materialized, and text may be added in chunks.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see SimHashIndex
+ */
+public final class SimHash {
+    public static final int SHINGLE_WORDS = 4;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int[] weights = new int[Long.SIZE];
+    private final long[] window = new long[SHINGLE_WORDS];
+    private long words;
+    private long shingles;
+    private long word = FNV_OFFSET;
+    private boolean inWord;
+
+    /**
+     * @param text text to be hashed.
+     * @return SimHash of the text, 0 if it has fewer than {@link SimHash#SHINGLE_WORDS} words.
+     */
+    public static long of(CharSequence text) {
+        return new SimHash().add(text).value();
+    }
+
+    /**
+     * @param a SimHash.
+     * @param b SimHash.
+     * @return amount of bits in which the SimHashes differ.
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * Adds the next chunk of the text, a word may continue from the previous chunk.
+     * @param text chunk of text.
+     * @return this {@link SimHash}.
+     */
+    public SimHash add(CharSequence text) {
+        for(int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if(Character.isLetterOrDigit(c)) {
+                word = (word ^ Character.toLowerCase(c)) * FNV_PRIME;
+                inWord = true;
+            } else if(inWord) endWord();
+        }
+        return this;
+    }
+
+    private void endWord() {
+        window[(int) (words++ % SHINGLE_WORDS)] = word;
+        word = FNV_OFFSET;
+        inWord = false;
+        if(words < SHINGLE_WORDS) return;
+        long h = FNV_OFFSET;
+        for(long w = words - SHINGLE_WORDS; w < words; w++)
+            h = (h ^ window[(int) (w % SHINGLE_WORDS)]) * FNV_PRIME;
+        h = Fingerprint.mix(h);
+        for(int bit = 0; bit < Long.SIZE; bit++)
+            weights[bit] += (int) ((h >>> bit) & 1) * 2 - 1;
+        shingles++;
+    }
+
+    /**
+     * @return amount of shingles hashed so far.
+     */
+    public long shingles() {
+        return shingles;
+    }
+
+    /**
+     * Ends the current word, as if the text ended here.
+     * @return SimHash of the text added so far, 0 if it has fewer than {@link SimHash#SHINGLE_WORDS} words.
+     */
+    public long value() {
+        if(inWord) endWord();
+        long simHash = 0;
+        for(int bit = 0; bit < Long.SIZE; bit++)
+            if(weights[bit] > 0) simHash |= 1L << bit;
+        return simHash;
+    }
+}
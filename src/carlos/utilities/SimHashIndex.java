@@ -0,0 +1,152 @@
+package carlos.utilities;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory index of 64-bit {@link SimHash}es, answering whether a SimHash within a Hamming distance of
+ * <code>k</code> bits has been added.<br/>
+ * SimHashes are split into up to {@link SimHashIndex#MAX_BANDS} bands of at least 16 bits. Two SimHashes differing
+ * in at most <code>k</code> bits differ in at most <code>k / bands</code> bits of at least one band, so only the
+ * SimHashes whose band is within that distance of the band of the queried one are compared, each band being a hash
+ * table from the value of the band to the SimHashes having it. Narrower bands would need fewer probes, but would put
+ * a large share of all SimHashes into every bucket.<br/>
+ * The index holds at most its capacity of SimHashes, past it the oldest are forgotten,
+ * as near-duplicates are mostly found close to each other in a crawl.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see SimHash
+ */
+public final class SimHashIndex {
+    public static final int MAX_DISTANCE = 7;
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+    private static final int MAX_BANDS = 4;
+
+    private final int maxDistance;
+    private final int bandDistance;
+    private final int[] bandShifts;
+    private final int[] bandWidths;
+    private final Map<Long, Bucket>[] bands;
+    private final long[] added;
+    private int next;
+    private int size;
+
+    /**
+     * @param maxDistance largest amount of differing bits for two SimHashes to be near each other.
+     * @throws IllegalArgumentException if the distance is negative or greater than {@link SimHashIndex#MAX_DISTANCE}.
+     */
+    public SimHashIndex(int maxDistance) throws IllegalArgumentException {
+        this(maxDistance, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param maxDistance largest amount of differing bits for two SimHashes to be near each other.
+     * @param capacity largest amount of SimHashes held, past it the oldest are forgotten.
+     * @throws IllegalArgumentException if the distance is negative or greater than {@link SimHashIndex#MAX_DISTANCE},
+     * or the capacity is not positive.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public SimHashIndex(int maxDistance, int capacity) throws IllegalArgumentException {
+        if(maxDistance < 0 || maxDistance > MAX_DISTANCE)
+            throw new IllegalArgumentException("maxDistance must be between 0 and " + MAX_DISTANCE + "!");
+        if(capacity < 1) throw new IllegalArgumentException("capacity must be greater than 0!");
+        this.maxDistance = maxDistance;
+        this.added = new long[capacity];
+        int n = Math.min(maxDistance + 1, MAX_BANDS);
+        bandDistance = maxDistance / n;
+        bandShifts = new int[n];
+        bandWidths = new int[n];
+        bands = new Map[n];
+        for(int band = 0, shift = 0; band < n; band++) {
+            int width = (Long.SIZE - shift) / (n - band);
+            bandShifts[band] = shift;
+            bandWidths[band] = width;
+            bands[band] = new HashMap<>();
+            shift += width;
+        }
+    }
+
+    /**
+     * Adds the SimHash unless a SimHash near it has already been added.
+     * @param simHash SimHash to be added.
+     * @return true if it was added, false if it is near an added SimHash.
+     */
+    public synchronized boolean addIfNovel(long simHash) {
+        if(containsNear(simHash)) return false;
+        if(size == added.length) {
+            var oldest = added[next];
+            for(int band = 0; band < bands.length; band++) {
+                var key = key(oldest, band);
+                if(bands[band].get(key).remove(oldest)) bands[band].remove(key);
+            }
+        } else size++;
+        added[next] = simHash;
+        next = (next + 1) % added.length;
+        for(int band = 0; band < bands.length; band++)
+            bands[band].computeIfAbsent(key(simHash, band), k -> new Bucket()).add(simHash);
+        return true;
+    }
+
+    /**
+     * Band distances are at most 1, as there are {@link SimHashIndex#MAX_BANDS} bands
+     * and at most {@link SimHashIndex#MAX_DISTANCE} differing bits, so besides the band itself
+     * only its single bit flips are probed.
+     * @param simHash SimHash to be tested.
+     * @return true if a SimHash differing from it in at most the maximum distance has been added.
+     */
+    public synchronized boolean containsNear(long simHash) {
+        for(int band = 0; band < bands.length; band++) {
+            long key = key(simHash, band);
+            if(containsNear(bands[band].get(key), simHash)) return true;
+            if(bandDistance > 0)
+                for(int bit = 0; bit < bandWidths[band]; bit++)
+                    if(containsNear(bands[band].get(key ^ (1L << bit)), simHash)) return true;
+        }
+        return false;
+    }
+
+    private boolean containsNear(Bucket candidates, long simHash) {
+        if(candidates == null) return false;
+        for(int i = 0; i < candidates.size; i++)
+            if(SimHash.distance(candidates.simHashes[i], simHash) <= maxDistance) return true;
+        return false;
+    }
+
+    /**
+     * @return amount of SimHashes held, at most the capacity.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    private long key(long simHash, int band) {
+        int width = bandWidths[band];
+        return (simHash >>> bandShifts[band]) & (width == Long.SIZE ? -1L : (1L << width) - 1);
+    }
+
+    /**
+     * Growable array of the SimHashes sharing the value of a band.
+     */
+    private static final class Bucket {
+        private long[] simHashes = new long[2];
+        private int size;
+
+        void add(long simHash) {
+            if(size == simHashes.length) simHashes = Arrays.copyOf(simHashes, size << 1);
+            simHashes[size++] = simHash;
+        }
+
+        /**
+         * @return true if the bucket is empty afterwards.
+         */
+        boolean remove(long simHash) {
+            for(int i = 0; i < size; i++)
+                if(simHashes[i] == simHash) {
+                    simHashes[i] = simHashes[--size];
+                    break;
+                }
+            return size == 0;
+        }
+    }
+}
@@ -2,30 +2,46 @@ package carlos.utilities;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.lang.Thread.currentThread;
 
 /**
  * Class which implements concurrency for parallel computing
- * of a repetitive task.
+ * of a repetitive task.<br/>
+ * Threads are either daemon platform threads or, if requested, virtual threads.
+ * Virtual threads suit tasks which spend most of their time blocked on I/O,
+ * as tens of thousands of them can be allocated without exhausting the JVM.<br/>
+ * The pool can be resized while running, shrinking lets threads finish their current action before they stop.
  * @author Carlos Milkovic
- * @version 1.1
+ * @version 1.2
  */
 public abstract class SingleTaskService<T> {
     private final List<Thread> threadPool;
     private Runnable task;
     final int initialSize;
+    private final boolean virtual;
+    private final AtomicInteger retiring = new AtomicInteger();
+    private int threadSequence;
     private static int gID = 0;
     private final int ID = ++gID;
 
     public SingleTaskService() {
-        threadPool = new ArrayList<>();
-        initialSize = 0;
+        this(0);
     }
 
     public SingleTaskService(int n) {
+        this(n, false);
+    }
+
+    /**
+     * @param n amount of threads allocated on {@link SingleTaskService#start(Object)}.
+     * @param virtual true if virtual threads should be used instead of platform threads.
+     */
+    public SingleTaskService(int n, boolean virtual) {
         threadPool = new ArrayList<>(n);
         initialSize = n;
+        this.virtual = virtual;
     }
 
     /**
@@ -94,14 +110,72 @@ public abstract class SingleTaskService<T> {
      * Allocates and starts n more threads.
      * @param n number of threads to be added.
      */
-    final public void allocateThreads(int n) {
-        for (int i = threadPool.size(); i < n; i++) {
-            threadPool.add(new Thread(task, "STS" + ID + "--Thread-" + i));
-            threadPool.get(i).setDaemon(true);
-            threadPool.get(i).start();
+    final public synchronized void allocateThreads(int n) {
+        for (int i = 0; i < n; i++) {
+            var thread = newThread("STS" + ID + "--Thread-" + threadSequence++);
+            threadPool.add(thread);
+            thread.start();
         }
     }
 
+    /**
+     * Stops n threads once they finish their current action, without interrupting them or waiting for them.
+     * @param n number of threads to be stopped.
+     */
+    final public synchronized void retireThreads(int n) {
+        retiring.addAndGet(Math.min(n, activeSize()));
+    }
+
+    /**
+     * Grows or shrinks the pool to the given amount of threads, calling off retirements before allocating threads.
+     * @param n amount of threads.
+     * @see SingleTaskService#retireThreads(int)
+     */
+    final public synchronized void resize(int n) {
+        int difference = n - activeSize();
+        if(difference < 0) retireThreads(-difference);
+        else if(difference > 0) allocateThreads(difference - cancelRetirements(difference));
+    }
+
+    /**
+     * @return amount of threads alive which are not about to retire.
+     */
+    final public int activeSize() {
+        return Math.max(threadPool.size() - retiring.get(), 0);
+    }
+
+    private int cancelRetirements(int n) {
+        int r;
+        do {
+            r = retiring.get();
+        } while(r > 0 && !retiring.compareAndSet(r, r - Math.min(r, n)));
+        return Math.min(Math.max(r, 0), n);
+    }
+
+    private boolean retire() {
+        int r;
+        do {
+            r = retiring.get();
+            if(r <= 0) return false;
+        } while(!retiring.compareAndSet(r, r - 1));
+        return true;
+    }
+
+    private Thread newThread(String name) {
+        if(virtual)
+            return Thread.ofVirtual().name(name).unstarted(task);
+        var thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * @return true if this {@link SingleTaskService} allocates virtual threads.
+     */
+    final public boolean isVirtual() {
+        return virtual;
+    }
+
     final public boolean isRunning() {
         return !threadPool.isEmpty();
     }
@@ -114,10 +188,11 @@ public abstract class SingleTaskService<T> {
     }
 
      private void loop(T t) {
+        boolean retired = false;
         try {
             while (condition(t)) {
                 action(t);
-                if (currentThread().isInterrupted())
+                if (currentThread().isInterrupted() || (retired = retire()))
                     break;
             }
         }
@@ -128,6 +203,9 @@ public abstract class SingleTaskService<T> {
         finally {
             synchronized (this) {
                 threadPool.remove(currentThread());
+                // a thread leaving for any other reason takes the place of a pending retirement
+                if(!retired) retire();
+                if(threadPool.isEmpty()) retiring.set(0);
                 this.notifyAll();
             }
         }
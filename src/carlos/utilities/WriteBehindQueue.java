@@ -0,0 +1,134 @@
+package carlos.utilities;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Appends batches of lines to files on a single background daemon thread.<br/>
+ * Callers hand over a batch and return immediately, batches are written in the order they were queued,
+ * through a large buffer, and forced to the storage device before their future completes.
+ * Batches can also be compressed with a {@link BlockCompression}, which then runs on the writer thread as well.
+ * @author Carlos Milkovic
+ * @version 1.0
+ */
+public final class WriteBehindQueue {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final AtomicInteger depth = new AtomicInteger();
+    private final ExecutorService writer;
+
+    /**
+     * @param name name of the writer thread.
+     */
+    public WriteBehindQueue(String name) {
+        writer = Executors.newSingleThreadExecutor(r -> {
+            var thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues the lines to be appended to the file, creating it if necessary.
+     * The collection must not be modified afterwards.
+     * @param path file the lines are appended to.
+     * @param lines lines to be appended.
+     * @return future completed once the lines are on the storage device,
+     * or completed exceptionally if they could not be written.
+     */
+    public CompletableFuture<Void> append(Path path, Collection<String> lines) {
+        return submit(() -> write(path, lines));
+    }
+
+    /**
+     * Queues the lines to be compressed and appended to the file, creating it if necessary.
+     * The collection must not be modified afterwards.
+     * @param path file the compressed lines are appended to.
+     * @param lines lines to be appended.
+     * @param compression format the lines are compressed with.
+     * @return future completed once the compressed lines have been written,
+     * or completed exceptionally if they could not be written.
+     * @see BlockCompression
+     */
+    public CompletableFuture<Void> append(Path path, Collection<String> lines, BlockCompression compression) {
+        return submit(() -> compression.append(path, lines));
+    }
+
+    /**
+     * Queues a write of any format, to be run on the writer thread after all writes queued before it.
+     * @param write write to be run.
+     * @return future completed once the write has run, or completed exceptionally if it failed.
+     */
+    public CompletableFuture<Void> submit(Write write) {
+        depth.incrementAndGet();
+        return CompletableFuture.runAsync(() -> {
+            try {
+                write.run();
+            } catch (IOException e) {
+                e.printStackTrace();
+                throw new UncheckedIOException(e);
+            } finally {
+                depth.decrementAndGet();
+            }
+        }, writer);
+    }
+
+    /**
+     * @return future completed once every batch queued before this call has been written.
+     */
+    public CompletableFuture<Void> barrier() {
+        return CompletableFuture.runAsync(() -> {}, writer);
+    }
+
+    /**
+     * @return amount of batches queued or being written.
+     */
+    public int depth() {
+        return depth.get();
+    }
+
+    @FunctionalInterface
+    public interface Write {
+        void run() throws IOException;
+    }
+
+    private static void write(Path path, Collection<String> lines) throws IOException {
+        var buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (var channel = FileChannel.open(path, CREATE, WRITE, APPEND)) {
+            for(var line : lines) {
+                var bytes = line.getBytes(StandardCharsets.UTF_8);
+                if(bytes.length + LINE_SEPARATOR.length > buffer.remaining()) drain(channel, buffer);
+                if(bytes.length + LINE_SEPARATOR.length > buffer.capacity()) {
+                    writeFully(channel, ByteBuffer.wrap(bytes));
+                    writeFully(channel, ByteBuffer.wrap(LINE_SEPARATOR));
+                    continue;
+                }
+                buffer.put(bytes).put(LINE_SEPARATOR);
+            }
+            drain(channel, buffer);
+            channel.force(false);
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        writeFully(channel, buffer.flip());
+        buffer.clear();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining())
+            channel.write(buffer);
+    }
+}
@@ -1,19 +1,19 @@
 package carlos.webscraper;
 
-import carlos.webscraper.exceptions.ReachedEndException;
+import carlos.utilities.BlockCompression;
+import carlos.utilities.RecordFile;
+import carlos.utilities.SimHash;
+import carlos.utilities.SimHashIndex;
 import carlos.webscraper.parser.HTMLParser;
+import carlos.webscraper.parser.MultiParserMatcher;
+import carlos.webscraper.parser.TextExtractor;
 import carlos.webscraper.parser.link.LanguagePattern;
 import carlos.webscraper.parser.link.LinkParser;
 
-import java.io.IOException;
 import java.io.Serial;
 import java.io.Serializable;
-import java.nio.file.Files;
-import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.function.BiFunction;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.LongAdder;
 
 import static java.util.stream.Collectors.toConcurrentMap;
 
@@ -28,6 +28,13 @@ final class ContentHandler implements Serializable {
     private static final long serialVersionUID = 395515185246116492L;
     private LinkParser linkParser;
     private final Map<HTMLParser, Integer> contributionsToParser;
+    private boolean parallelParsing;
+    private transient MultiParserMatcher matcher;
+    private int nearDuplicateDistance = -1;
+    private boolean skipLinksOfNearDuplicates;
+    private transient SimHashIndex nearDuplicates;
+    private final LongAdder checkedPages = new LongAdder();
+    private final LongAdder skippedPages = new LongAdder();
 
     /**
      * Creates a new {@link ContentHandler} instance and links provided {@link HTMLParser}s to it.
@@ -41,28 +48,6 @@ final class ContentHandler implements Serializable {
         linkParser = LinkParser.newStandardLinkParser();
     }
 
-    Queue<String> loadUnvisitedLinks(WebScraper scraper) throws ReachedEndException {
-        Queue<String> q = null;
-        try {
-            q = Files.lines(getLinkParser().pathToUnvisited(scraper))
-                    .limit(1_000_000)
-                    .collect(Collectors.toCollection(ConcurrentLinkedQueue::new));
-            if(q.isEmpty()) throw new ReachedEndException(scraper);
-            overwriteUnvisitedFile(scraper, q);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return q != null ? q : new ConcurrentLinkedQueue<>();
-    }
-
-    private void overwriteUnvisitedFile(WebScraper scraper, Queue<String> q) throws IOException {
-        getLinkParser().flushUnvisited(loadUntouchedLinks(scraper, q), scraper, StandardOpenOption.WRITE);
-    }
-
-    private List<String> loadUntouchedLinks(WebScraper scraper, Queue<String> q) throws IOException {
-        return Files.lines(getLinkParser().pathToUnvisited(scraper)).skip(q.size()).toList();
-    }
-
     /**
      * Retrieves the number of tokens contributed by the parent {@link WebScraper}.
      * @param parser parser for which the contributions are to be retrieved.
@@ -77,15 +62,15 @@ final class ContentHandler implements Serializable {
 
     /**
      * Enables url filtering by language for the contained {@link LinkParser}
-     * @param languagePattern pattern constant which the contained {@link LinkParser} will use.
-     * @throws NullPointerException if provided {@link LanguagePattern} is null.
+     * @param languagePatterns pattern constants which the contained {@link LinkParser} will use.
+     * @throws NullPointerException if any of the provided {@link LanguagePattern}s is null.
      * @see LinkParser
      * @see LanguagePattern
      * @see ContentHandler
      */
-    void restrictLanguage(LanguagePattern languagePattern) throws NullPointerException {
-        Objects.requireNonNull(languagePattern);
-        linkParser.addLanguageFilter(languagePattern);
+    void restrictLanguage(Collection<LanguagePattern> languagePatterns) throws NullPointerException {
+        for(var languagePattern : languagePatterns)
+            linkParser.addLanguageFilter(Objects.requireNonNull(languagePattern));
     }
 
     void setCustomLinkParser(LinkParser linkParser) {
@@ -94,18 +79,137 @@ final class ContentHandler implements Serializable {
 
     /**
      * Parses and stores relative parsed data for each {@link HTMLParser} controlled by this class,
-     * from the given raw HTML.
+     * from the given raw HTML, and parses the links of the page alongside them.
+     * All parsers which have not reached their limit are matched sharing transformed text and scans wherever they can,
+     * in parallel if {@link ContentHandler#parallelizeParsing()} was called. The results are joined
+     * before any contributions are updated.
      * Updates the {@link ContentHandler#contributionsToParser} with the new data added.
+     * @param url url of the page.
      * @param html HTML to be parsed.
+     * @return links parsed by the {@link LinkParser}.
      * @see HTMLParser
+     * @see MultiParserMatcher
      * @see ContentHandler
      */
-    void addAllNewContent(String html) {
-        contributionsToParser.replaceAll(updateContributions(html));
+    Set<String> addAllNewContent(String url, String html) {
+        if(isNearDuplicate(html))
+            return skipLinksOfNearDuplicates ? Collections.emptySet() : getLinks(url, html);
+        return match(url, html, true).getOrDefault(linkParser, Collections.emptySet());
+    }
+
+    /**
+     * Parses and stores relative parsed data for each {@link HTMLParser} controlled by this class,
+     * like {@link ContentHandler#addAllNewContent(String, String)}, but without parsing links.
+     * @param url url of the page.
+     * @param html HTML to be parsed.
+     * @see Pipeline
+     */
+    void addNewContent(String url, String html) {
+        match(url, html, false);
+    }
+
+    private Map<HTMLParser, Set<String>> match(String url, String html, boolean withLinks) {
+        var parsers = new ArrayList<HTMLParser>(contributionsToParser.size() + 1);
+        if(withLinks) parsers.add(linkParser);
+        for(var parser : contributionsToParser.keySet())
+            if(!parser.reachedLimit()) parsers.add(parser);
+        var matches = matcher().match(url, html, parsers);
+        contributionsToParser.replaceAll((parser, contribution) -> contribution
+                + parser.addMatchedContent(matches.getOrDefault(parser, Collections.emptySet()), url));
+        return matches;
+    }
+
+    /**
+     * Makes this {@link ContentHandler} skip content parsing of pages whose text is a near-duplicate
+     * of a page seen before, i.e. whose {@link SimHash} differs from the SimHash of that page in at most
+     * the given amount of bits.
+     * @param maxDistance largest amount of differing bits for two pages to be near-duplicates.
+     * @param skipLinks true if the links of near-duplicates should not be extracted either.
+     * @throws IllegalArgumentException if the distance is negative or greater than {@link SimHashIndex#MAX_DISTANCE}.
+     * @see ContentHandler#isNearDuplicate(String)
+     */
+    void detectNearDuplicates(int maxDistance, boolean skipLinks) throws IllegalArgumentException {
+        nearDuplicates = new SimHashIndex(maxDistance);
+        nearDuplicateDistance = maxDistance;
+        skipLinksOfNearDuplicates = skipLinks;
+    }
+
+    /**
+     * Tests whether the text of the page is a near-duplicate of a page seen before, remembering it if it is not.
+     * Pages with fewer than {@link SimHash#SHINGLE_WORDS} words are never near-duplicates.
+     * @param html HTML of the page.
+     * @return true if near-duplicate detection is enabled and the page is a near-duplicate.
+     * @see ContentHandler#detectNearDuplicates(int, boolean)
+     */
+    boolean isNearDuplicate(String html) {
+        if(nearDuplicateDistance < 0) return false;
+        var simHash = new SimHash().add(TextExtractor.extract(html));
+        long value = simHash.value();
+        if(simHash.shingles() == 0) return false;
+        checkedPages.increment();
+        if(nearDuplicates().addIfNovel(value)) return false;
+        skippedPages.increment();
+        return true;
     }
 
-    private synchronized BiFunction<HTMLParser, Integer, Integer> updateContributions(String html) {
-        return (parser, contribution) -> contributionsToParser.get(parser) + parser.addContentFrom(html);
+    /**
+     * @return true if the links of near-duplicates are not extracted.
+     */
+    boolean skipsLinksOfNearDuplicates() {
+        return skipLinksOfNearDuplicates;
+    }
+
+    /**
+     * @return near-duplicate detection statistics, null if it is disabled.
+     */
+    String nearDuplicateInfo() {
+        if(nearDuplicateDistance < 0) return null;
+        long checked = checkedPages.sum(), skipped = skippedPages.sum();
+        return String.format("%d of %d pages skipped (%.1f%%, distance <= %d%s)", skipped, checked,
+                checked == 0 ? 0.0 : skipped * 100.0 / checked, nearDuplicateDistance,
+                skipLinksOfNearDuplicates ? ", links skipped" : "");
+    }
+
+    private synchronized SimHashIndex nearDuplicates() {
+        if(nearDuplicates == null) nearDuplicates = new SimHashIndex(nearDuplicateDistance);
+        return nearDuplicates;
+    }
+
+    /**
+     * Makes this {@link ContentHandler} run the parsers of each page in parallel
+     * on the {@link MultiParserMatcher#parallel()} pool instead of on the fetching thread.
+     * @see Option#PARALLEL_PARSING
+     */
+    void parallelizeParsing() {
+        parallelParsing = true;
+        matcher = null;
+    }
+
+    private MultiParserMatcher matcher() {
+        if(matcher == null)
+            matcher = parallelParsing ? MultiParserMatcher.parallel() : MultiParserMatcher.sequential();
+        return matcher;
+    }
+
+    /**
+     * Makes every {@link HTMLParser} controlled by this class, and the {@link LinkParser}, save block-compressed output.
+     * @param compression block size and compression level to be used.
+     * @see BlockCompression
+     */
+    void compressOutputOfAllParsers(BlockCompression compression) {
+        for(var parser : contributionsToParser.keySet())
+            parser.compressOutput(compression);
+        linkParser.compressOutput(compression);
+    }
+
+    /**
+     * Makes every {@link HTMLParser} controlled by this class, and the {@link LinkParser}, save indexed binary records.
+     * @see RecordFile
+     */
+    void recordOutputOfAllParsers() {
+        for(var parser : contributionsToParser.keySet())
+            parser.recordOutput();
+        linkParser.recordOutput();
     }
 
     void enableSavingForAllParsers() {
@@ -113,8 +217,15 @@ final class ContentHandler implements Serializable {
             parser.enableSaving();
     }
 
-    Set<String> getLinks(String html) {
-        return linkParser.getContent(html);
+    /**
+     * Extracts the links of a page without parsing its content.
+     * @param url url of the page, relative links are resolved against it.
+     * @param html HTML of the page.
+     * @return links parsed by the {@link LinkParser}.
+     * @see LinkParser#getLinks(CharSequence, String)
+     */
+    Set<String> getLinks(String url, String html) {
+        return linkParser.getLinks(html, url);
     }
 
     /**
@@ -125,13 +236,16 @@ final class ContentHandler implements Serializable {
             parser.flush(parser.pathToContent());
     }
 
-    void saveUnvisitedLinks(WebScraper scraper) {
-        getLinkParser().flush(getLinkParser().pathToUnvisited(scraper));
+    /**
+     * Saves the visited links buffered in the {@link LinkParser}.
+     */
+    void saveVisitedLinks() {
+        getLinkParser().flush(getLinkParser().pathToVisited());
     }
 
     /**
      * Tests whether the given link has already been visited i.e.
-     * is present in the {@link HTMLParser#cache} which holds visited links.
+     * its fingerprint is present in the visited set of the {@link LinkParser}.
      * @param link link to be tested
      * @return true if the link is not present in the set.
      */
@@ -139,6 +253,15 @@ final class ContentHandler implements Serializable {
         return !this.linkParser.alreadyVisited(link);
     }
 
+    /**
+     * @param link link parsed from a page.
+     * @return canonical form of the link.
+     * @see LinkParser#canonicalize(String)
+     */
+    String canonicalize(String link) {
+        return linkParser.canonicalize(link);
+    }
+
     LinkParser getLinkParser() {
         return linkParser;
     }
@@ -0,0 +1,129 @@
+package carlos.webscraper;
+
+import carlos.utilities.SegmentedQueue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Queue of unvisited links for a {@link WebScraper}.<br/>
+ * Keeps up to {@link Frontier#IN_MEMORY_LIMIT} links in memory. Once that is reached, new links are
+ * appended to a {@link SegmentedQueue} on disk, and are moved back into memory in batches of
+ * {@link Frontier#REFILL_BATCH} as the in-memory links run out.
+ * While the disk queue holds any links, new links go to disk as well, so links come out in the order they went in.
+ * A persistent {@link Frontier} reopens the disk queue left by a previous run, and continues with its links.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see SegmentedQueue
+ */
+final class Frontier {
+    static final int IN_MEMORY_LIMIT = 100_000;
+    static final int REFILL_BATCH = 10_000;
+
+    private final Queue<String> memory = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inMemory = new AtomicInteger();
+    private final Supplier<Path> directory;
+    private final boolean persistent;
+    private SegmentedQueue disk;
+    private volatile boolean onDisk;
+
+    /**
+     * @param directory supplies the directory of the disk queue. Unless persistent, only called once the first link
+     * spills to disk.
+     * @param persistent true if links left on disk should outlive the JVM, and be reloaded by the next {@link Frontier}
+     * on the same directory.
+     * @throws UncheckedIOException if the disk queue of a previous run could not be opened.
+     */
+    Frontier(Supplier<Path> directory, boolean persistent) throws UncheckedIOException {
+        this.directory = directory;
+        this.persistent = persistent;
+        if(persistent && Files.isDirectory(directory.get()))
+            onDisk = !disk().isEmpty();
+    }
+
+    /**
+     * Appends the link to the tail of this {@link Frontier}.
+     * @param link link to be added.
+     */
+    void add(String link) {
+        if(!onDisk && inMemory.get() < IN_MEMORY_LIMIT) {
+            memory.add(link);
+            inMemory.incrementAndGet();
+        }
+        else spill(link);
+    }
+
+    /**
+     * Retrieves and removes the head of this {@link Frontier}, refilling memory from disk if necessary.
+     * @return the head, null if this {@link Frontier} is empty.
+     */
+    String poll() {
+        var link = memory.poll();
+        if(link == null && onDisk) {
+            refill();
+            link = memory.poll();
+        }
+        if(link != null) inMemory.decrementAndGet();
+        return link;
+    }
+
+    boolean isEmpty() {
+        return inMemory.get() == 0 && !onDisk;
+    }
+
+    /**
+     * @return amount of links in memory and on disk, in O(1).
+     */
+    long size() {
+        return inMemory.get() + (onDisk ? diskSize() : 0);
+    }
+
+    /**
+     * Moves all in-memory links to disk and forces the disk queue to the storage device.
+     * In-memory links end up behind the links which were already on disk.
+     */
+    synchronized void persist() {
+        String link;
+        while((link = memory.poll()) != null) {
+            inMemory.decrementAndGet();
+            disk().add(link);
+            onDisk = true;
+        }
+        if(disk != null) disk.force();
+    }
+
+    private synchronized void spill(String link) {
+        disk().add(link);
+        onDisk = true;
+    }
+
+    private synchronized void refill() {
+        if(!memory.isEmpty() || disk == null) return;
+        var batch = new ArrayList<String>(REFILL_BATCH);
+        inMemory.addAndGet(disk.drainTo(batch, REFILL_BATCH));
+        memory.addAll(batch);
+        onDisk = !disk.isEmpty();
+    }
+
+    private synchronized long diskSize() {
+        return disk != null ? disk.size() : 0;
+    }
+
+    private SegmentedQueue disk() throws UncheckedIOException {
+        if(disk == null) {
+            try {
+                disk = new SegmentedQueue(directory.get(), SegmentedQueue.DEFAULT_SEGMENT_SIZE, !persistent);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return disk;
+    }
+}
@@ -8,6 +8,8 @@ package carlos.webscraper;
  *     <li>SAVE_PARSED_ELEMENTS - enables saving for all parsers</li>
  *     <li>STAY_ON_WEBSITE      - makes the implementing link parser filter out
  *     any links not from the same domain as {@link WebScraperBuilder#initialURL}</li>
+ *     <li>PARALLEL_PARSING     - runs the parsers of each page in parallel on a pool sized to the amount of cores,
+ *     instead of one after another on the thread which fetched the page</li>
  *     <li>SERIALIZE_ON_CLOSE   - serializes the {@link WebScraper} on close. <b>DEPRECATED</b></li>
  * </ul>
  * for use with {@link WebScraperBuilder#withOptions(Option...)}
@@ -21,6 +23,7 @@ public enum Option {
     SAVE_PARSED_ELEMENTS,
     UNLIMITED,
     STAY_ON_WEBSITE,
+    PARALLEL_PARSING,
     @Deprecated
     SERIALIZE_ON_CLOSE
 }
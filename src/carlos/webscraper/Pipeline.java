@@ -0,0 +1,150 @@
+package carlos.webscraper;
+
+import carlos.webscraper.fetch.Page;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded queues connecting the stages of a pipelined {@link WebScraper}:<br/>
+ * fetch -> {@link Pipeline#fetched} -> link extraction -> {@link Pipeline#extracted} -> content parsing.<br/>
+ * A full queue blocks the stage feeding it, so fast stages never run away from slow ones.
+ * Links taken from the frontier are counted as in flight until the links of their page reach the frontier,
+ * so fetchers do not give up while the frontier is only momentarily empty.
+ * Once the stages are stopped, pages left in the queues are drained, so their visited links are not lost.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see WebScraperBuilder#withPipeline(int, int)
+ */
+final class Pipeline {
+    static final int QUEUE_CAPACITY = 256;
+    private static final long POLL_MILLIS = 100;
+
+    final int linkThreads;
+    final int parseThreads;
+    private final BlockingQueue<Page> fetched = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final BlockingQueue<Page> extracted = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final List<Page> interrupted = new ArrayList<>();
+
+    /**
+     * @param linkThreads amount of threads extracting links.
+     * @param parseThreads amount of threads parsing content.
+     * @throws IllegalArgumentException if either amount of threads is non-positive.
+     */
+    Pipeline(int linkThreads, int parseThreads) throws IllegalArgumentException {
+        if(linkThreads < 1 || parseThreads < 1)
+            throw new IllegalArgumentException("every pipeline stage needs at least 1 thread!");
+        this.linkThreads = linkThreads;
+        this.parseThreads = parseThreads;
+    }
+
+    /**
+     * Marks a link taken from the frontier as in flight.
+     */
+    void taken() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Marks a link taken from the frontier as no longer in flight, because the links of its page reached the frontier
+     * or its page was dropped.
+     */
+    void settled() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Hands a fetched page to the link extraction stage, waiting while the queue is full.
+     * Empty pages have no links and are dropped.
+     * @param page fetched page.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    void fetched(Page page) throws InterruptedException {
+        if(page.isEmpty()) {
+            settled();
+            return;
+        }
+        try {
+            fetched.put(page);
+        } catch (InterruptedException e) {
+            settled();
+            throw e;
+        }
+    }
+
+    /**
+     * @return next fetched page, null if none arrived within {@link Pipeline#POLL_MILLIS}.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    Page nextFetched() throws InterruptedException {
+        return fetched.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Hands a page whose links have been added to the frontier to the content parsing stage,
+     * waiting while the queue is full. A page interrupted while waiting is kept for {@link Pipeline#drainExtracted()}.
+     * @param page page whose links were extracted.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    void extracted(Page page) throws InterruptedException {
+        try {
+            extracted.put(page);
+        } catch (InterruptedException e) {
+            synchronized (interrupted) {
+                interrupted.add(page);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return next page to be parsed, null if none arrived within {@link Pipeline#POLL_MILLIS}.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    Page nextExtracted() throws InterruptedException {
+        return extracted.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Removes the fetched pages whose links were not extracted, meant to be called once the stages have stopped.
+     * @return pages left in the fetched queue.
+     */
+    List<Page> drainFetched() {
+        var pages = new ArrayList<Page>(fetched.size());
+        fetched.drainTo(pages);
+        inFlight.addAndGet(-pages.size());
+        return pages;
+    }
+
+    /**
+     * Removes the pages whose content was not parsed, meant to be called once the stages have stopped.
+     * @return pages left in the extracted queue, or interrupted on their way to it.
+     */
+    List<Page> drainExtracted() {
+        var pages = new ArrayList<Page>(extracted.size());
+        extracted.drainTo(pages);
+        synchronized (interrupted) {
+            pages.addAll(interrupted);
+            interrupted.clear();
+        }
+        return pages;
+    }
+
+    /**
+     * @return true if some fetched pages may still add links to the frontier.
+     */
+    boolean hasPagesInFlight() {
+        return inFlight.get() > 0;
+    }
+
+    @Override
+    public String toString() {
+        return fetched.size() + " fetched, " + extracted.size() + " awaiting parsing ("
+                + linkThreads + " link threads, " + parseThreads + " parse threads)";
+    }
+}
@@ -0,0 +1,229 @@
+package carlos.webscraper;
+
+import carlos.utilities.SingleTaskService;
+import carlos.webscraper.fetch.FetchStatistics;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller resizing the fetching threads of a {@link WebScraper} with additive increase, multiplicative decrease.<br/>
+ * At a fixed interval it samples the throughput, average request latency and error rate since the last sample:
+ * <ul>
+ *     <li>if a host throttled a request, too many requests failed, or the latency grew past
+ *     {@link ThreadAutoscaler#LATENCY_TOLERANCE} times the lowest latency of the last
+ *     {@link ThreadAutoscaler#BASELINE_SAMPLES} samples, the threads are cut by
+ *     {@link ThreadAutoscaler#DECREASE_FACTOR}. The baseline moves with the crawl, so a few fast early samples
+ *     do not hold the threads down once slower hosts are reached</li>
+ *     <li>otherwise one thread is added, unless the thread added last time did not raise the throughput,
+ *     in which case the size is held for one interval before probing again</li>
+ * </ul>
+ * The amount of threads always stays within the configured bounds. Threads removed finish the page they are
+ * fetching, see {@link SingleTaskService#resize(int)}.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see WebScraperBuilder#withThreadAutoscaling(int, int, Duration)
+ */
+final class ThreadAutoscaler {
+    static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(5);
+    static final double DECREASE_FACTOR = 0.5;
+    static final double MAX_ERROR_RATE = 0.1;
+    static final double LATENCY_TOLERANCE = 2.0;
+    static final int BASELINE_SAMPLES = 12;
+    private static final double MIN_GAIN = 1.05;
+
+    /**
+     * Outcome of a sample.
+     */
+    enum Decision {
+        INCREASE,
+        DECREASE,
+        HOLD
+    }
+
+    final int minThreads;
+    final int maxThreads;
+    private final Duration interval;
+    private volatile ScheduledExecutorService timer;
+    private volatile boolean stopped = true;
+    private SingleTaskService<?> service;
+    private FetchStatistics statistics;
+    private String name;
+    private boolean debug;
+    private long lastTime;
+    private long lastPages;
+    private long lastRequests;
+    private long lastRequestNanos;
+    private long lastFailures;
+    private long lastThrottled;
+    private double lastThroughput;
+    private final double[] recentLatencies = new double[BASELINE_SAMPLES];
+    private int latencySamples;
+    private Decision lastDecision = Decision.HOLD;
+    private volatile String lastReport = "no samples yet";
+
+    /**
+     * @param minThreads least amount of fetching threads.
+     * @param maxThreads largest amount of fetching threads.
+     * @param interval time between two samples.
+     * @throws IllegalArgumentException if the bounds are not positive, or the maximum is below the minimum,
+     * or the interval is not positive.
+     */
+    ThreadAutoscaler(int minThreads, int maxThreads, Duration interval) throws IllegalArgumentException {
+        if(minThreads < 1) throw new IllegalArgumentException("minThreads must be greater than 0!");
+        if(maxThreads < minThreads) throw new IllegalArgumentException("maxThreads must not be less than minThreads!");
+        if(interval.isNegative() || interval.isZero()) throw new IllegalArgumentException("interval must be positive!");
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.interval = interval;
+    }
+
+    /**
+     * @param n requested amount of threads.
+     * @return the amount clamped to the bounds of this controller.
+     */
+    int clamp(int n) {
+        return Math.max(minThreads, Math.min(maxThreads, n));
+    }
+
+    /**
+     * Starts sampling on a daemon thread.
+     * @param service service whose threads fetch pages.
+     * @param statistics statistics the fetching threads record into.
+     * @param name name decisions are printed with.
+     * @param debug whether every decision is printed.
+     */
+    synchronized void start(SingleTaskService<?> service, FetchStatistics statistics, String name, boolean debug) {
+        stop();
+        this.service = service;
+        this.statistics = statistics;
+        this.name = name;
+        this.debug = debug;
+        lastTime = System.nanoTime();
+        lastPages = pagesOf(statistics);
+        lastRequests = statistics.requests();
+        lastRequestNanos = statistics.requestNanos();
+        lastFailures = statistics.failures();
+        lastThrottled = statistics.throttled();
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "ThreadAutoscaler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        stopped = false;
+        timer.scheduleAtFixedRate(this::sampleAndResize, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops sampling, the amount of threads is left as it is.<br/>
+     * Does not take the monitor of this controller, so it may be called while holding the monitor of the service,
+     * which a sample waits for to resize it. A sample in progress does not resize once this returned.
+     */
+    void stop() {
+        stopped = true;
+        var t = timer;
+        timer = null;
+        if(t != null) t.shutdownNow();
+    }
+
+    private synchronized void sampleAndResize() {
+        try {
+            if(stopped || service == null || !service.isRunning()) return;
+            int threads = service.activeSize();
+            int target = switch(sample(threads)) {
+                case INCREASE -> clamp(threads + 1);
+                case DECREASE -> clamp((int) (threads * DECREASE_FACTOR));
+                case HOLD -> clamp(threads);
+            };
+            if(target != threads) {
+                synchronized(service) {
+                    if(stopped || !service.isRunning()) return;
+                    service.resize(target);
+                }
+            }
+            if(debug) System.out.println(name + " autoscaler: " + lastReport + " -> " + target);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Takes a sample of the statistics since the last one and decides how to resize.
+     * @param threads current amount of fetching threads.
+     * @return the decision, also kept for {@link ThreadAutoscaler#toString()}.
+     */
+    synchronized Decision sample(int threads) {
+        long now = System.nanoTime();
+        long pages = pagesOf(statistics), requests = statistics.requests(), requestNanos = statistics.requestNanos(),
+                failures = statistics.failures(), throttled = statistics.throttled();
+        double seconds = Math.max(now - lastTime, 1) / 1e9;
+        double throughput = (pages - lastPages) / seconds;
+        long sampledRequests = requests - lastRequests;
+        double latency = sampledRequests == 0 ? 0 : (requestNanos - lastRequestNanos) / 1e6 / sampledRequests;
+        double errorRate = sampledRequests == 0 ? 0 : (failures - lastFailures) / (double) sampledRequests;
+        long sampledThrottled = throttled - lastThrottled;
+        double lowestLatency = lowestRecentLatency();
+        if(sampledRequests > 0) recentLatencies[latencySamples++ % BASELINE_SAMPLES] = latency;
+
+        Decision decision;
+        String reason;
+        if(sampledThrottled > 0) {
+            decision = Decision.DECREASE;
+            reason = sampledThrottled + " requests throttled";
+        } else if(errorRate > MAX_ERROR_RATE) {
+            decision = Decision.DECREASE;
+            reason = String.format("error rate %.0f%%", errorRate * 100);
+        } else if(sampledRequests > 0 && latency > lowestLatency * LATENCY_TOLERANCE) {
+            decision = Decision.DECREASE;
+            reason = String.format("latency %.0f ms over %.1fx the recent lowest %.0f ms", latency, LATENCY_TOLERANCE, lowestLatency);
+        } else if(sampledRequests == 0) {
+            decision = Decision.HOLD;
+            reason = "no requests";
+        } else if(lastDecision == Decision.INCREASE && throughput <= lastThroughput * MIN_GAIN) {
+            decision = Decision.HOLD;
+            reason = "throughput did not grow";
+        } else if(threads >= maxThreads) {
+            decision = Decision.HOLD;
+            reason = "at maximum";
+        } else {
+            decision = Decision.INCREASE;
+            reason = "healthy";
+        }
+        if(decision == Decision.DECREASE && threads <= minThreads) reason += ", at minimum";
+
+        lastTime = now;
+        lastPages = pages;
+        lastRequests = requests;
+        lastRequestNanos = requestNanos;
+        lastFailures = failures;
+        lastThrottled = throttled;
+        lastThroughput = throughput;
+        lastDecision = decision;
+        lastReport = String.format("%s at %d threads (%.1f pages/s, %.0f ms latency, %.0f%% errors): %s",
+                decision, threads, throughput, latency, errorRate * 100, reason);
+        return decision;
+    }
+
+    /**
+     * @return lowest average latency of the last {@link ThreadAutoscaler#BASELINE_SAMPLES} samples with requests,
+     * infinity if there were none.
+     */
+    private double lowestRecentLatency() {
+        double lowest = Double.POSITIVE_INFINITY;
+        for(int i = 0, n = Math.min(latencySamples, BASELINE_SAMPLES); i < n; i++)
+            lowest = Math.min(lowest, recentLatencies[i]);
+        return lowest;
+    }
+
+    private static long pagesOf(FetchStatistics statistics) {
+        return statistics.pages() + statistics.notModified();
+    }
+
+    @Override
+    public String toString() {
+        return minThreads + ".." + maxThreads + " threads every " + interval.toMillis() + " ms, last: " + lastReport;
+    }
+}
@@ -1,23 +1,29 @@
 package carlos.webscraper;
 
+import carlos.utilities.ParsedUrl;
 import carlos.utilities.SingleTaskService;
 import carlos.webscraper.exceptions.PageWithoutLinksException;
 import carlos.webscraper.exceptions.ReachedEndException;
+import carlos.webscraper.fetch.FetchStatistics;
+import carlos.webscraper.fetch.Fetcher;
+import carlos.webscraper.fetch.HostScheduler;
+import carlos.webscraper.fetch.HttpClientFetcher;
+import carlos.webscraper.fetch.HttpStatusException;
+import carlos.webscraper.fetch.LanguageFilter;
+import carlos.webscraper.fetch.LanguageMismatchException;
+import carlos.webscraper.fetch.Page;
+import carlos.webscraper.fetch.RobotsCache;
+import carlos.webscraper.fetch.ValidatorStore;
 import carlos.webscraper.parser.HTMLParser;
 import carlos.webscraper.parser.link.LinkParser;
 import carlos.webscraper.service.ScraperService;
 
 import java.io.*;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Queue;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
-import static carlos.webscraper.parser.HTMLParser.CACHE_LIMIT;
 import static carlos.webscraper.Option.*;
 import static java.lang.Thread.MAX_PRIORITY;
 import static java.lang.Thread.currentThread;
@@ -32,25 +38,60 @@ public final class WebScraper implements Serializable {
     private static final long serialVersionUID = 5440710515833287425L;
     private static int globalID = 0;
     private final int ID;
-    private Queue<String> unvisitedLinks;
+    private transient Frontier unvisitedLinks;
     private final OptionHandler optionHandler;
     private final ContentHandler contentHandler;
+    private final FetchStatistics fetchStatistics = new FetchStatistics();
     private transient SingleTaskService<WebScraper> service;
+    private transient Pipeline pipeline;
+    private transient ThreadAutoscaler autoscaler;
+    private transient SingleTaskService<WebScraper> linkStage;
+    private transient SingleTaskService<WebScraper> parseStage;
+    private transient Fetcher fetcher;
+    private transient HostScheduler hostScheduler;
+    private transient RobotsCache robots;
+    private final String robotsAgent;
+    private transient ValidatorStore validatorStore;
+    private final String validatorStorePath;
+    private final LanguageFilter languageFilter;
     private final String startURL;
-
-    static {
-        System.setProperty("sun.net.client.defaultReadTimeout", "5000");
-        System.setProperty("sun.net.client.defaultConnectTimeout", "5000");
-    }
-
-    WebScraper(String startURL, OptionHandler optionHandler, ContentHandler contentHandler, int nThreads) {
+    private final boolean virtualThreads;
+    private transient Map<String, Integer> throttledLinks = new ConcurrentHashMap<>();
+    private static final int MAX_HOST_SKIPS = 64;
+    private static final int MAX_THROTTLED_RETRIES = 5;
+    private static final long HOST_WAIT_MILLIS = 50;
+
+    WebScraper(String startURL, OptionHandler optionHandler, ContentHandler contentHandler, Fetcher fetcher,
+               HostScheduler hostScheduler, LanguageFilter languageFilter, String robotsAgent,
+               Path validatorStorePath, int nThreads, boolean virtualThreads, Pipeline pipeline,
+               ThreadAutoscaler autoscaler) {
+        ID = ++globalID;
         this.startURL = startURL;
+        this.virtualThreads = virtualThreads;
         this.optionHandler = optionHandler;
         this.contentHandler = contentHandler;
-        unvisitedLinks = new ConcurrentLinkedQueue<>();
+        this.fetcher = fetcher;
+        this.hostScheduler = hostScheduler;
+        this.languageFilter = languageFilter;
+        this.robotsAgent = robotsAgent;
+        this.validatorStorePath = validatorStorePath == null ? null : validatorStorePath.toString();
+        this.pipeline = pipeline;
+        this.autoscaler = autoscaler;
+        unvisitedLinks = newFrontier();
+        robots = newRobotsCache();
         service = getService(nThreads);
-        ID = ++globalID;
+        if(pipeline != null) {
+            linkStage = getLinkStage(pipeline.linkThreads);
+            parseStage = getParseStage(pipeline.parseThreads);
+        }
+    }
+
+    private RobotsCache newRobotsCache() {
+        return robotsAgent == null ? null : new RobotsCache(fetcher, hostScheduler, robotsAgent);
+    }
 
+    private Frontier newFrontier() {
+        return new Frontier(() -> contentHandler.getLinkParser().pathToUnvisited(this), optionHandler.isPresent(SAVE_LINKS));
     }
 
     /**
@@ -60,21 +101,68 @@ public final class WebScraper implements Serializable {
         if(isRunning()) System.err.println(this + " is already running!");
         else {
             try {
-                addUnvisitedLinks(getHTML(startURL), startURL);
-                service.start(this);
+                openValidatorStore();
+                var page = fetchPage(startURL);
+                addUnvisitedLinks(contentHandler.getLinks(page.url(), page.html()), startURL);
+                startServices();
                 System.out.println(this + " STARTED");
             } catch (PageWithoutLinksException | InterruptedException e) {
-                if(unvisitedLinks.isEmpty())
+                if(unvisitedLinks.isEmpty() && (robots == null || !robots.hasWaitingUrls()))
                     System.err.println("UNABLE TO START " + this);
-                else service.start(this);
+                else startServices();
             }
         }
     }
 
+    /**
+     * Opens the {@link ValidatorStore} of a previous crawl, if recrawling is enabled, and queues the pages
+     * it knows of, so pages only linked from pages which were not modified are still visited.
+     * @see WebScraperBuilder#withRecrawlStore(Path)
+     */
+    private void openValidatorStore() {
+        if(validatorStorePath == null || validatorStore != null) return;
+        try {
+            validatorStore = ValidatorStore.open(Path.of(validatorStorePath));
+            var start = contentHandler.canonicalize(startURL);
+            validatorStore.forEachUrl(link -> {
+                if(!link.equals(start) && contentHandler.linkNotVisited(link)) queueLink(link);
+            });
+            if(optionHandler.isPresent(DEBUG_MODE)) System.out.println("Opened " + validatorStore);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Stores the validators of a downloaded page for the next crawl, under the url it was requested with,
+     * even if it was redirected.
+     * @param url url which was requested.
+     * @param page downloaded page.
+     */
+    private void rememberValidators(String url, Page page) {
+        if(validatorStore == null) return;
+        try {
+            validatorStore.put(url, page.validators());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void startServices() {
+        service.start(this);
+        if(pipeline != null) {
+            linkStage.start(this);
+            parseStage.start(this);
+        }
+        if(autoscaler != null)
+            autoscaler.start(service, fetchStatistics, toString(), optionHandler.isPresent(DEBUG_MODE));
+    }
+
     /**
      * Stops this {@link WebScraper}.
      */
     public void stop() {
+        if(autoscaler != null) autoscaler.stop();
         service.stop(this);
     }
 
@@ -126,12 +214,13 @@ public final class WebScraper implements Serializable {
     /**
      * Captures the domain from the given URL.
      * @param url url to be parsed.
-     * @return website domain.
+     * @return first label of the website's registrable domain, e.g. "wikipedia" for en.wikipedia.org.
+     * @throws IllegalArgumentException if the url is not a valid url.
      */
     private String getDomain(String url) {
-        var m = Pattern.compile("(?<=\\.)([A-Za-z_]+?)(?=[.])").matcher(url);
-        if(m.find()) return m.group(1);
-        else throw new IllegalArgumentException("cannot parse main site");
+        var domain = ParsedUrl.parse(url).host().domain().name();
+        int dot = domain.indexOf('.');
+        return dot < 0 ? domain : domain.substring(0, dot);
     }
 
     @Serial
@@ -144,6 +233,11 @@ public final class WebScraper implements Serializable {
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         in.defaultReadObject();
         service = getService(in.readInt());
+        fetcher = new HttpClientFetcher();
+        hostScheduler = new HostScheduler();
+        unvisitedLinks = newFrontier();
+        robots = newRobotsCache();
+        throttledLinks = new ConcurrentHashMap<>();
     }
 
     /**
@@ -156,17 +250,31 @@ public final class WebScraper implements Serializable {
     }
 
     /**
-     * Saves cached links from {@link ContentHandler#linkParser}.
-     * @throws IOException if the file could not be opened or created for any reason.
+     * Saves cached visited links from {@link ContentHandler#linkParser}
+     * and persists {@link WebScraper#unvisitedLinks} to disk.
      * @see LinkParser
+     * @see Frontier
      */
-    private void saveLinks() throws IOException {
-        contentHandler.saveUnvisitedLinks(this);
-        contentHandler.getLinkParser().flushUnvisited(unvisitedLinks, this);
+    private void saveLinks() {
+        contentHandler.saveVisitedLinks();
+        unvisitedLinks.persist();
         if (optionHandler.isPresent(DEBUG_MODE))
             System.out.println("Links saved");
     }
 
+    /**
+     * Waits until the background writer has written everything saved so far to the storage device.
+     * @see HTMLParser#awaitFlushes()
+     */
+    private void awaitSaved() {
+        try {
+            HTMLParser.awaitFlushes();
+            if (optionHandler.isPresent(DEBUG_MODE)) System.out.println("Saved content written to disk");
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+        }
+    }
+
     /**
      * Outputs to the console that this {@link WebScraper} is finalized.
      */
@@ -177,14 +285,14 @@ public final class WebScraper implements Serializable {
     }
 
     /**
-     * Tries to add unvisited links from the specified HTML to {@link WebScraper#unvisitedLinks}.
-     * @param link link used to request this HTML. <br/>
+     * Tries to add the specified unvisited links to {@link WebScraper#unvisitedLinks}.
+     * @param link link used to request the page the links were parsed from. <br/>
      * (needed for {@link PageWithoutLinksException})
-     * @param html page from which the links will be parsed.
+     * @param links links parsed from the page.
      */
-    private void tryAddingNewLinks(String link, String html) {
+    private void tryAddingNewLinks(String link, Set<String> links) {
         try {
-            addUnvisitedLinks(html, link);
+            addUnvisitedLinks(links, link);
         } catch(PageWithoutLinksException e) {
             if(optionHandler.isPresent(DEBUG_MODE)) System.err.println(e.getMessage());
         }
@@ -207,38 +315,70 @@ public final class WebScraper implements Serializable {
     }
 
     /**
-     * Retrieves the next link in {@link WebScraper#unvisitedLinks} queue.
+     * Retrieves the next link in {@link WebScraper#unvisitedLinks} queue whose host may be requested right now.
+     * Waits only if none of the links at the head of the queue belong to such a host.
      * @throws ReachedEndException if the queue is empty i.e. there is nowhere else to go.
+     * @throws InterruptedException if interrupted while waiting for a host to become available.
      * @return the next link in sequence.
+     * @see HostScheduler
      */
-    private synchronized String nextLink() throws ReachedEndException {
-        if(unvisitedLinks.isEmpty()) {
-            if(Files.exists(contentHandler.getLinkParser().pathToContent()))
-                unvisitedLinks = contentHandler.loadUnvisitedLinks(this);
-            else throw new ReachedEndException(this);
-        }
-        var link = unvisitedLinks.poll();
+    private String nextLink() throws ReachedEndException, InterruptedException {
+        String link;
+        while((link = pollReadyLink()) == null)
+            Thread.sleep(HOST_WAIT_MILLIS);
         contentHandler.addLink(link);
         printDebugNL();
         return link;
     }
 
     /**
-     * Adds unvisited links from the specified HTML {@link String} to the {@link WebScraper#unvisitedLinks} queue.
-     * @param html html to be parsed.
-     * @param url link to specified HTML.
+     * Polls links from the head of {@link WebScraper#unvisitedLinks}, moving links of hosts
+     * which cannot be requested yet to the tail of the queue.
+     * Links visited since they were queued, e.g. found on several pages, are dropped,
+     * except throttled links put back by {@link WebScraper#backOff(String, HttpStatusException)}.
+     * @throws ReachedEndException if the queue is empty i.e. there is nowhere else to go.
+     * @return a link which may be requested now, null if none was found within {@link WebScraper#MAX_HOST_SKIPS} links,
+     * or if the queue is empty but the {@link Pipeline} may still add links to it.
+     */
+    private synchronized String pollReadyLink() throws ReachedEndException {
+        if(unvisitedLinks.isEmpty()) {
+            if(pipeline != null && pipeline.hasPagesInFlight()) return null;
+            if(robots != null && robots.hasWaitingUrls()) return null;
+            throw new ReachedEndException(this);
+        }
+        for(int i = 0; i < MAX_HOST_SKIPS; ) {
+            var link = unvisitedLinks.poll();
+            if(link == null) return null;
+            if(!contentHandler.linkNotVisited(link) && !throttledLinks.containsKey(link)) continue;
+            if(hostScheduler.tryAcquire(link)) {
+                if(pipeline != null) pipeline.taken();
+                return link;
+            }
+            unvisitedLinks.add(link);
+            i++;
+        }
+        return null;
+    }
+
+    /**
+     * Canonicalizes the specified links and adds those which have not been visited yet
+     * to the {@link WebScraper#unvisitedLinks} queue.
+     * If robots.txt is respected, links go through the {@link RobotsCache} first, so disallowed links are never queued.
+     * Links past {@link Frontier#IN_MEMORY_LIMIT} are spilled to disk by the {@link Frontier}.
+     * @param links links parsed from a page.
+     * @param url link to the page.
      * @throws PageWithoutLinksException if no links were parsed.
+     * @see carlos.webscraper.parser.link.UrlCanonicalizer
      */
-    private void addUnvisitedLinks(String html, String url) throws PageWithoutLinksException {
-        int UNVISITED_LINK_LIMIT = 5_000_000;
-        if(unvisitedLinks.size() >= UNVISITED_LINK_LIMIT) cacheLinks();
-        var links = contentHandler.getLinks(html);
+    private void addUnvisitedLinks(Set<String> links, String url) throws PageWithoutLinksException {
         if (links.isEmpty()) throw new PageWithoutLinksException(this, url);
-        links.stream().filter(contentHandler::linkNotVisited).forEach(unvisitedLinks::add);
+        links.stream().map(contentHandler::canonicalize).distinct()
+                .filter(contentHandler::linkNotVisited).forEach(this::queueLink);
     }
 
-    private synchronized void cacheLinks() {
-        contentHandler.getLinkParser().flushUnvisited(unvisitedLinks, this);
+    private void queueLink(String link) {
+        if(robots == null) unvisitedLinks.add(link);
+        else robots.admit(link, unvisitedLinks::add);
     }
 
     private void printDebugNL() {
@@ -249,41 +389,80 @@ public final class WebScraper implements Serializable {
     }
 
     /**
-     * Retrieves the HTML from the given URL.
-     * @param url url to be used to request HTML.
-     * @return HTML.
+     * Retrieves the {@link Page} from the given URL using this {@link WebScraper}'s {@link Fetcher}.
+     * If the host throttles the request, it is backed off in the {@link HostScheduler}
+     * and the url is put back into {@link WebScraper#unvisitedLinks}.
+     * @param url url to be used to request the page.
+     * @return the page, with the url it was redirected to, empty if it could not be visited.
+     * @see Fetcher
      */
-    private String getHTML(String url) throws InterruptedException {
-        var html = new StringBuilder(500_000);
-        debugGetHTML(url);
-        try (var reader = new BufferedInputStream(new URI(url).toURL().openStream())) {
-            int b;
-            while ((b = reader.read()) != -1)
-                html.append((char) b);
-        } catch (IOException | URISyntaxException e) {
-            if (optionHandler.isPresent(DEBUG_MODE)) {
-                System.err.println("Couldn't visit page:" + url);
-                System.err.println(e.getMessage());
-                ifTooManyRequestsErrorSleep(e);
+    private Page fetchPage(String url) throws InterruptedException {
+        var page = Page.empty(url);
+        long start = System.nanoTime();
+        try {
+            var validators = validatorStore == null ? null : validatorStore.get(url);
+            page = fetcher.fetch(url, languageFilter, validators);
+            hostScheduler.onSuccess(url);
+            if(page.isNotModified()) fetchStatistics.recordNotModified();
+            else {
+                fetchStatistics.record(page);
+                rememberValidators(url, page);
             }
+            debugGetHTML(page);
+        } catch (LanguageMismatchException e) {
+            hostScheduler.onSuccess(url);
+            fetchStatistics.recordRejected();
+            printCouldNotVisit(url, e);
+        } catch (HttpStatusException e) {
+            if (e.isThrottling()) {
+                fetchStatistics.recordThrottled();
+                backOff(url, e);
+                return page;
+            } else {
+                fetchStatistics.recordFailure();
+                printCouldNotVisit(url, e);
+            }
+        } catch (IOException e) {
+            fetchStatistics.recordFailure();
+            printCouldNotVisit(url, e);
+        } finally {
+            fetchStatistics.recordRequest(System.nanoTime() - start);
         }
-        return html.toString();
+        throttledLinks.remove(url);
+        return page;
     }
 
     /**
-     * Makes the entrant {@link Thread} idle for 30 seconds if the target server is getting too many requests.
-     * @param e {@link Exception} to be tested for code "429"
+     * Backs off the host of the given url and re-queues the url, which is already marked visited,
+     * so {@link WebScraper#pollReadyLink()} lets it through. A url throttled more than
+     * {@link WebScraper#MAX_THROTTLED_RETRIES} times in a row is given up on.
+     * @param url url which was throttled.
+     * @param e {@link HttpStatusException} with status code 429 or 503.
      */
-    private void ifTooManyRequestsErrorSleep(Exception e) throws InterruptedException {
-        if(e.getMessage().contains(" 429 ")) {
-            System.out.println(this + " is sending too many requests");
-            Thread.sleep(30_000);
+    private void backOff(String url, HttpStatusException e) {
+        var delay = hostScheduler.onThrottled(url, e.retryAfter());
+        int retries = throttledLinks.merge(url, 1, Integer::sum);
+        if(retries > MAX_THROTTLED_RETRIES) {
+            throttledLinks.remove(url);
+            printCouldNotVisit(url, e);
+            return;
+        }
+        unvisitedLinks.add(url);
+        if (optionHandler.isPresent(DEBUG_MODE))
+            System.err.println(this + " is sending too many requests, backing off "
+                    + url + " for " + delay.toMillis() + " ms (retry " + retries + ")");
+    }
+
+    private void printCouldNotVisit(String url, IOException e) {
+        if (optionHandler.isPresent(DEBUG_MODE)) {
+            System.err.println("Couldn't visit page:" + url);
+            System.err.println(e.getMessage());
         }
     }
 
-    private void debugGetHTML(String url) {
+    private void debugGetHTML(Page page) {
         if(optionHandler.isPresent(DEBUG_MODE))
-            System.out.println("visiting " + url);
+            System.out.println("visited " + page);
     }
 
     /**
@@ -301,32 +480,68 @@ public final class WebScraper implements Serializable {
         var sb = new StringBuilder();
         appendNameAndState(sb);
         appendLinks(sb);
+        appendDownloads(sb);
+        if(pipeline != null) sb.append("\tpipeline: ").append(pipeline).append('\n');
+        if(autoscaler != null) sb.append("\tautoscaler: ").append(autoscaler).append('\n');
+        var nearDuplicates = contentHandler.nearDuplicateInfo();
+        if(nearDuplicates != null) sb.append("\tnear-duplicates: ").append(nearDuplicates).append('\n');
         appendContributions(sb);
         return sb.substring(0, sb.length() - 1);
     }
 
+    private boolean shouldContinue() {
+        return optionHandler.isPresent(UNLIMITED) || contentHandler.notAllAreCollected();
+    }
+
+    /**
+     * Creates the main service. Without a {@link Pipeline} each thread fetches a page, adds its links
+     * and parses its content. With one, threads only fetch pages and hand them to the {@link Pipeline}.
+     * @param n amount of threads.
+     * @return the main service, which also saves everything when stopped.
+     */
     private SingleTaskService<WebScraper> getService(int n) {
-        return new SingleTaskService<>(n) {
+        return new SingleTaskService<>(n, virtualThreads) {
             @Override
             public boolean condition(WebScraper webScraper) {
-                return optionHandler.isPresent(UNLIMITED) || contentHandler.notAllAreCollected();
+                return shouldContinue();
             }
 
             @Override
             public void action(WebScraper webScraper) throws InterruptedException {
                 var link = nextLink();
-                String html = getHTML(link);
-                if (unvisitedLinks.size() < CACHE_LIMIT)
-                    tryAddingNewLinks(link, html);
-                contentHandler.addAllNewContent(html);
+                if(pipeline != null) {
+                    Page page = null;
+                    try {
+                        page = fetchPage(link);
+                    } finally {
+                        if(page == null) pipeline.settled();
+                    }
+                    pipeline.fetched(page);
+                    return;
+                }
+                var page = fetchPage(link);
+                if(page.isNotModified()) return;
+                tryAddingNewLinks(link, contentHandler.addAllNewContent(page.url(), page.html()));
                 printDebugMain(contentHandler.getParsers());
             }
 
             @Override
             public void close(WebScraper webScraper) {
+                if(autoscaler != null) autoscaler.stop();
+                if(pipeline != null) {
+                    linkStage.stop(webScraper);
+                    parseStage.stop(webScraper);
+                    drainPipeline();
+                }
                 try {
                     if (optionHandler.isPresent(SAVE_LINKS)) saveLinks();
                     if (optionHandler.isPresent(SAVE_PARSED_ELEMENTS)) saveAllContent();
+                    if (optionHandler.isPresent(SAVE_LINKS) || optionHandler.isPresent(SAVE_PARSED_ELEMENTS))
+                        awaitSaved();
+                    if (validatorStore != null) {
+                        validatorStore.close();
+                        validatorStore = null;
+                    }
                     if (optionHandler.isPresent(SERIALIZE_ON_CLOSE))
                         System.out.println("Scraper serialized... path to object -> " + serialize());
                 } catch (IOException e) {
@@ -337,9 +552,91 @@ public final class WebScraper implements Serializable {
         };
     }
 
+    /**
+     * Creates the link extraction stage of the {@link Pipeline}.
+     * @param n amount of threads.
+     * @return the link extraction stage.
+     */
+    private SingleTaskService<WebScraper> getLinkStage(int n) {
+        return new SingleTaskService<>(n) {
+            @Override
+            public boolean condition(WebScraper webScraper) {
+                return shouldContinue();
+            }
+
+            @Override
+            public void action(WebScraper webScraper) throws InterruptedException {
+                var page = pipeline.nextFetched();
+                if(page == null) return;
+                boolean parse;
+                try {
+                    parse = extractLinks(page);
+                } finally {
+                    pipeline.settled();
+                }
+                if(parse) pipeline.extracted(page);
+            }
+        };
+    }
+
+    /**
+     * Adds the links of a fetched page to the frontier, unless it is a near-duplicate whose links are skipped.
+     * @param page fetched page.
+     * @return true if the content of the page should be parsed, false if it is a near-duplicate.
+     */
+    private boolean extractLinks(Page page) {
+        boolean nearDuplicate = contentHandler.isNearDuplicate(page.html());
+        if(!nearDuplicate || !contentHandler.skipsLinksOfNearDuplicates())
+            tryAddingNewLinks(page.url(), contentHandler.getLinks(page.url(), page.html()));
+        return !nearDuplicate;
+    }
+
+    /**
+     * Finishes the pages left in the {@link Pipeline} once its stages have stopped. Their links were already marked
+     * visited, so their links and content would otherwise be lost, and missing from the saved links.
+     */
+    private void drainPipeline() {
+        for(var page : pipeline.drainExtracted())
+            contentHandler.addNewContent(page.url(), page.html());
+        for(var page : pipeline.drainFetched())
+            if(extractLinks(page)) contentHandler.addNewContent(page.url(), page.html());
+    }
+
+    /**
+     * Creates the content parsing stage of the {@link Pipeline}.
+     * @param n amount of threads.
+     * @return the content parsing stage.
+     */
+    private SingleTaskService<WebScraper> getParseStage(int n) {
+        return new SingleTaskService<>(n) {
+            @Override
+            public boolean condition(WebScraper webScraper) {
+                return shouldContinue();
+            }
+
+            @Override
+            public void action(WebScraper webScraper) throws InterruptedException {
+                var page = pipeline.nextExtracted();
+                if(page == null) return;
+                contentHandler.addNewContent(page.url(), page.html());
+                printDebugMain(contentHandler.getParsers());
+            }
+        };
+    }
+
     private void appendLinks(StringBuilder sb) {
         sb.append("\tunvisited links: ").append(unvisitedLinks.size()).append('\n')
-            .append("\tvisited links: ").append(contentHandler.getLinkParser().getTotal()).append('\n');
+            .append("\tvisited links: ").append(contentHandler.getLinkParser().getTotal())
+            .append(String.format(" (%.2f MB in memory, %.2f MB on disk)",
+                    contentHandler.getLinkParser().visitedMemoryFootprint() / (1024.0 * 1024.0),
+                    contentHandler.getLinkParser().visitedDiskFootprint() / (1024.0 * 1024.0)))
+            .append('\n');
+    }
+
+    private void appendDownloads(StringBuilder sb) {
+        sb.append("\tdownloaded: ").append(fetchStatistics).append('\n')
+                .append("\tbacked off hosts: ").append(hostScheduler.blockedHosts()).append('\n')
+                .append("\tpending flushes: ").append(HTMLParser.pendingFlushes()).append('\n');
     }
 
     private void appendNameAndState(StringBuilder sb) {
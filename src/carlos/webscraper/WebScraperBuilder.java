@@ -1,15 +1,28 @@
 package carlos.webscraper;
 
+import carlos.utilities.BlockCompression;
+import carlos.utilities.RecordFile;
+import carlos.utilities.SimHash;
+import carlos.utilities.SimHashIndex;
+import carlos.webscraper.fetch.Fetcher;
+import carlos.webscraper.fetch.HostScheduler;
+import carlos.webscraper.fetch.HttpClientFetcher;
+import carlos.webscraper.fetch.LanguageFilter;
+import carlos.webscraper.fetch.RobotsCache;
+import carlos.webscraper.fetch.ValidatorStore;
 import carlos.webscraper.parser.HTMLParser;
 import carlos.webscraper.parser.Parser;
 import carlos.webscraper.parser.StandardParser;
 import carlos.webscraper.parser.link.LanguagePattern;
 import carlos.webscraper.parser.link.LinkParser;
+import carlos.webscraper.parser.link.UrlCanonicalizer;
 import carlos.webscraper.service.ScraperService;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.EnumSet;
 
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
@@ -24,8 +37,22 @@ public final class WebScraperBuilder {
     private OptionHandler optionHandler = OptionHandler.EMPTY;
     private final ContentHandler contentHandler;
     private String initialURL;
-    private LanguagePattern languagePattern;
+    private final EnumSet<LanguagePattern> linkLanguages = EnumSet.noneOf(LanguagePattern.class);
+    private final EnumSet<LanguagePattern> pageLanguages = EnumSet.noneOf(LanguagePattern.class);
     private int nThreads = 1;
+    private boolean virtualThreads;
+    private Fetcher fetcher;
+    private HostScheduler hostScheduler;
+    private BlockCompression compression;
+    private boolean recordOutput;
+    private int linkThreads;
+    private int parseThreads;
+    private UrlCanonicalizer canonicalizer;
+    private String robotsAgent;
+    private Path validatorStore;
+    private int nearDuplicateDistance = -1;
+    private boolean skipLinksOfNearDuplicates;
+    private ThreadAutoscaler autoscaler;
 
     private WebScraperBuilder(String initialURL, HTMLParser... customParsers) {
         this.initialURL = requireNonNull(initialURL);
@@ -86,14 +113,33 @@ public final class WebScraperBuilder {
     }
 
     /**
-     * Restricts the {@link LinkParser} of this object to only accept links containing regex: \.xx[./]|[./]xx\.|/xx/
-     * in the link, xx being the country code set in the {@link LanguagePattern} enum.
-     * @param languagePattern constant from which the country code is provided.
+     * Restricts the {@link LinkParser} of this object to only accept links with a host label or path part xx,
+     * e.g. xx.wikipedia.org or /xx/, xx being the country code set in the {@link LanguagePattern} enum,
+     * and rejects pages declaring any other language while they are downloaded,
+     * as in {@link WebScraperBuilder#restrictPageLanguage(LanguagePattern...)}.
+     * Links and pages in any of the given languages are accepted.
+     * @param languagePatterns constants from which the country codes are provided.
      * @return this {@link WebScraperBuilder} instance.
-     * @throws NullPointerException if provided {@link LanguagePattern} is null.
+     * @throws NullPointerException if any of the provided {@link LanguagePattern}s is null.
      */
-    public WebScraperBuilder restrictLanguage(LanguagePattern languagePattern) throws NullPointerException {
-        requireNonNull(this.languagePattern = languagePattern);
+    public WebScraperBuilder restrictLanguage(LanguagePattern... languagePatterns) throws NullPointerException {
+        linkLanguages.addAll(Arrays.asList(requireNonNull(languagePatterns)));
+        pageLanguages.addAll(linkLanguages);
+        return this;
+    }
+
+    /**
+     * Rejects pages which declare a language other than the given ones, in the <code>Content-Language</code> header
+     * or the <code>&lt;html lang&gt;</code> attribute, while they are downloaded, without restricting the links
+     * which are followed. Rejected pages are neither parsed nor searched for links.
+     * Pages which declare no language are accepted.
+     * @param languagePatterns languages of the pages to be accepted.
+     * @return this {@link WebScraperBuilder} instance.
+     * @throws NullPointerException if any of the provided {@link LanguagePattern}s is null.
+     * @see LanguageFilter
+     */
+    public WebScraperBuilder restrictPageLanguage(LanguagePattern... languagePatterns) throws NullPointerException {
+        pageLanguages.addAll(Arrays.asList(requireNonNull(languagePatterns)));
         return this;
     }
 
@@ -119,6 +165,205 @@ public final class WebScraperBuilder {
     public WebScraperBuilder withThreadPoolSize(int nThreads) throws IllegalArgumentException {
         if(nThreads < 1) throw new IllegalArgumentException("nThreads must be greater than 0!");
         this.nThreads = nThreads;
+        this.virtualThreads = false;
+        return this;
+    }
+
+    /**
+     * Sets the amount of virtual threads to scrape in parallel initially.<br/>
+     * Virtual threads are cheap to block, so this can be set to tens of thousands.
+     * Pair it with a {@link Fetcher} which allows as many requests in flight, e.g.
+     * {@link HttpClientFetcher#HttpClientFetcher(Duration, int)}.
+     * @param nThreads number of virtual threads.
+     * @throws IllegalArgumentException if the number of threads is non-positive.
+     * @return this {@link WebScraperBuilder} instance.
+     * @see carlos.utilities.SingleTaskService
+     */
+    public WebScraperBuilder withVirtualThreadPoolSize(int nThreads) throws IllegalArgumentException {
+        withThreadPoolSize(nThreads);
+        this.virtualThreads = true;
+        return this;
+    }
+
+    /**
+     * Splits scraping into fetch, link extraction and content parsing stages connected by bounded queues.<br/>
+     * The fetch stage runs on the threads set by {@link WebScraperBuilder#withThreadPoolSize(int)} or
+     * {@link WebScraperBuilder#withVirtualThreadPoolSize(int)}, so many cheap fetchers can saturate the network,
+     * while parsing runs on as many threads as there are cores, for example.
+     * A full queue makes the stage before it wait.
+     * @param linkThreads amount of threads extracting links from fetched pages.
+     * @param parseThreads amount of threads parsing content from fetched pages.
+     * @return this {@link WebScraperBuilder} instance.
+     * @throws IllegalArgumentException if either amount of threads is non-positive.
+     */
+    public WebScraperBuilder withPipeline(int linkThreads, int parseThreads) throws IllegalArgumentException {
+        if(linkThreads < 1 || parseThreads < 1)
+            throw new IllegalArgumentException("every pipeline stage needs at least 1 thread!");
+        this.linkThreads = linkThreads;
+        this.parseThreads = parseThreads;
+        return this;
+    }
+
+    /**
+     * Lets the amount of fetching threads adapt to the crawl, between the given bounds.<br/>
+     * Every interval the throughput, average latency and error rate of the fetches since the last interval are
+     * sampled. One thread is added while hosts answer quickly and the throughput grows, and the threads are halved
+     * as soon as a host throttles, too many requests fail or the latency doubles.
+     * Every decision is printed in {@link Option#DEBUG_MODE}.
+     * The initial amount of threads, set by {@link WebScraperBuilder#withThreadPoolSize(int)}, is kept within the bounds.
+     * @param minThreads least amount of fetching threads.
+     * @param maxThreads largest amount of fetching threads.
+     * @param interval time between two samples.
+     * @return this {@link WebScraperBuilder} instance.
+     * @throws IllegalArgumentException if minThreads is non-positive, maxThreads is less than minThreads,
+     * or the interval is not positive.
+     * @throws NullPointerException if the interval is null.
+     */
+    public WebScraperBuilder withThreadAutoscaling(int minThreads, int maxThreads, Duration interval)
+            throws IllegalArgumentException, NullPointerException {
+        this.autoscaler = new ThreadAutoscaler(minThreads, maxThreads, requireNonNull(interval));
+        return this;
+    }
+
+    /**
+     * Lets the amount of fetching threads adapt to the crawl, sampling every 5 seconds.
+     * @param minThreads least amount of fetching threads.
+     * @param maxThreads largest amount of fetching threads.
+     * @return this {@link WebScraperBuilder} instance.
+     * @throws IllegalArgumentException if minThreads is non-positive or maxThreads is less than minThreads.
+     * @see WebScraperBuilder#withThreadAutoscaling(int, int, Duration)
+     */
+    public WebScraperBuilder withThreadAutoscaling(int minThreads, int maxThreads) throws IllegalArgumentException {
+        return withThreadAutoscaling(minThreads, maxThreads, ThreadAutoscaler.DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Sets the {@link Fetcher} the {@link WebScraper} downloads pages with.
+     * Defaults to a new {@link HttpClientFetcher} if not set.
+     * @param fetcher fetcher to be used.
+     * @return this {@link WebScraperBuilder} instance.
+     * @throws NullPointerException if the fetcher is null.
+     * @see Fetcher
+     */
+    public WebScraperBuilder withFetcher(Fetcher fetcher) throws NullPointerException {
+        this.fetcher = requireNonNull(fetcher);
+        return this;
+    }
+
+    /**
+     * Limits the rate of requests sent to each individual host.<br/>
+     * Hosts which throttle the scraper (HTTP 429 or 503) are always backed off,
+     * honouring their <code>Retry-After</code> header, whether or not a rate limit is set.
+     * @param requestsPerSecond requests allowed per second for each host.
+     * @param burst amount of requests which can be sent at once to a host which has been idle.
+     * @return this {@link WebScraperBuilder} instance.
+     * @throws IllegalArgumentException if the rate or the burst is not positive.
+     * @see HostScheduler
+     */
+    public WebScraperBuilder withHostRateLimit(double requestsPerSecond, int burst) throws IllegalArgumentException {
+        this.hostScheduler = new HostScheduler(requestsPerSecond, burst);
+        return this;
+    }
+
+    /**
+     * Makes saved parsed elements and links be written as block-compressed GZIP files instead of plain text.
+     * Compression runs on the background writer, never on the scraping threads.
+     * Saved files can be read back with {@link BlockCompression#newReader(Path)}.
+     * @param blockSize maximum amount of uncompressed bytes in each block, e.g. {@link BlockCompression#DEFAULT_BLOCK_SIZE}.
+     * @param level compression level from 1 (fastest) to 9 (smallest), 0 (none) or -1 (default).
+     * @return this {@link WebScraperBuilder} instance.
+     * @throws IllegalArgumentException if the block size is not positive or the level is not valid.
+     * @see Option#SAVE_LINKS
+     * @see Option#SAVE_PARSED_ELEMENTS
+     */
+    public WebScraperBuilder withCompressedOutput(int blockSize, int level) throws IllegalArgumentException {
+        this.compression = new BlockCompression(blockSize, level);
+        return this;
+    }
+
+    /**
+     * Makes saved parsed elements and links be written as indexed binary records instead of plain text.
+     * Every record holds the element, the url of the page it was parsed from, when it was parsed and the parser name,
+     * and can be fetched by number or time range with {@link RecordFile#open(Path)}.
+     * Takes precedence over {@link WebScraperBuilder#withCompressedOutput(int, int)}.
+     * @return this {@link WebScraperBuilder} instance.
+     * @see Option#SAVE_LINKS
+     * @see Option#SAVE_PARSED_ELEMENTS
+     */
+    public WebScraperBuilder withRecordOutput() {
+        this.recordOutput = true;
+        return this;
+    }
+
+    /**
+     * Sets the rules discovered links are normalized and deduplicated by.
+     * Defaults to {@link UrlCanonicalizer#standard()}, which applies every {@link UrlCanonicalizer.Rule}.
+     * @param canonicalizer canonicalizer to be used.
+     * @return this {@link WebScraperBuilder} instance.
+     * @throws NullPointerException if the canonicalizer is null.
+     * @see UrlCanonicalizer
+     */
+    public WebScraperBuilder withUrlCanonicalizer(UrlCanonicalizer canonicalizer) throws NullPointerException {
+        this.canonicalizer = requireNonNull(canonicalizer);
+        return this;
+    }
+
+    /**
+     * Makes the {@link WebScraper} follow the robots.txt of every host it links to, for any crawler.
+     * @return this {@link WebScraperBuilder} instance.
+     * @see WebScraperBuilder#respectRobotsTxt(String)
+     */
+    public WebScraperBuilder respectRobotsTxt() {
+        return respectRobotsTxt("*");
+    }
+
+    /**
+     * Makes the {@link WebScraper} follow the robots.txt of every host it links to.<br/>
+     * The robots.txt of each host is fetched once and cached, links disallowed by it are dropped before they are
+     * queued, and its <code>Crawl-delay</code> is applied on top of {@link WebScraperBuilder#withHostRateLimit(double, int)}.
+     * Links to a host wait, without blocking the scraper, until its robots.txt has been fetched.
+     * @param userAgent user agent whose rules are followed, falling back to the rules for every crawler.
+     * @return this {@link WebScraperBuilder} instance.
+     * @throws NullPointerException if the user agent is null.
+     * @see RobotsCache
+     */
+    public WebScraperBuilder respectRobotsTxt(String userAgent) throws NullPointerException {
+        this.robotsAgent = requireNonNull(userAgent);
+        return this;
+    }
+
+    /**
+     * Makes the {@link WebScraper} remember the <code>ETag</code> and <code>Last-Modified</code> validators
+     * of every page it downloads in a {@link ValidatorStore} at the given path, kept between crawls.<br/>
+     * Later crawls with the same store send them as <code>If-None-Match</code> and <code>If-Modified-Since</code>
+     * headers, and skip parsing pages answered with <code>304 Not Modified</code>. Every page stored by
+     * the previous crawls is queued when the scraper starts, since the links of unmodified pages are not parsed again.
+     * @param path path of the store, created if it does not exist.
+     * @return this {@link WebScraperBuilder} instance.
+     * @throws NullPointerException if the path is null.
+     */
+    public WebScraperBuilder withRecrawlStore(Path path) throws NullPointerException {
+        this.validatorStore = requireNonNull(path);
+        return this;
+    }
+
+    /**
+     * Makes the {@link WebScraper} skip content parsing of pages which are near-duplicates of pages it has seen,
+     * e.g. mirrors, printer-friendly variants or pages of a list which only differ slightly.<br/>
+     * The text of every page is hashed into a 64-bit {@link SimHash} of its word shingles,
+     * and a page whose SimHash differs from one seen before in at most <code>maxDistance</code> bits is skipped.
+     * The amount of skipped pages is shown in {@link WebScraper#getInfo()}.
+     * @param maxDistance largest amount of differing bits for two pages to be near-duplicates. Pages of a few hundred
+     *                    words which differ in a sentence are usually 4 to 6 bits apart, unrelated pages more than 20.
+     * @param skipLinks true if the links of near-duplicates should not be followed either.
+     * @return this {@link WebScraperBuilder} instance.
+     * @throws IllegalArgumentException if the distance is negative or greater than {@link SimHashIndex#MAX_DISTANCE}.
+     */
+    public WebScraperBuilder withNearDuplicateDetection(int maxDistance, boolean skipLinks) throws IllegalArgumentException {
+        if(maxDistance < 0 || maxDistance > SimHashIndex.MAX_DISTANCE)
+            throw new IllegalArgumentException("maxDistance must be between 0 and " + SimHashIndex.MAX_DISTANCE + "!");
+        this.nearDuplicateDistance = maxDistance;
+        this.skipLinksOfNearDuplicates = skipLinks;
         return this;
     }
 
@@ -130,15 +375,30 @@ public final class WebScraperBuilder {
      * @see WebScraperBuilder
      */
     public WebScraper build() throws IllegalStateException {
-        if(languagePattern != null)
-            contentHandler.restrictLanguage(languagePattern);
+        if(!linkLanguages.isEmpty())
+            contentHandler.restrictLanguage(linkLanguages);
         if(optionHandler.isPresent(Option.SAVE_LINKS))
             contentHandler.getLinkParser().enableSaving();
         if(optionHandler.isPresent(Option.SAVE_PARSED_ELEMENTS))
             contentHandler.enableSavingForAllParsers();
         if(optionHandler.isPresent(Option.STAY_ON_WEBSITE))
-            contentHandler.getLinkParser().restrictToSite();
-        return new WebScraper(initialURL, optionHandler, contentHandler, nThreads);
+            contentHandler.getLinkParser().restrictToSite(initialURL);
+        if(canonicalizer != null)
+            contentHandler.getLinkParser().canonicalizeWith(canonicalizer);
+        if(compression != null)
+            contentHandler.compressOutputOfAllParsers(compression);
+        if(recordOutput)
+            contentHandler.recordOutputOfAllParsers();
+        if(optionHandler.isPresent(Option.PARALLEL_PARSING))
+            contentHandler.parallelizeParsing();
+        if(nearDuplicateDistance >= 0)
+            contentHandler.detectNearDuplicates(nearDuplicateDistance, skipLinksOfNearDuplicates);
+        return new WebScraper(initialURL, optionHandler, contentHandler,
+                fetcher != null ? fetcher : new HttpClientFetcher(),
+                hostScheduler != null ? hostScheduler : new HostScheduler(),
+                pageLanguages.isEmpty() ? null : new LanguageFilter(pageLanguages.stream().map(LanguagePattern::code).toList()),
+                robotsAgent, validatorStore, autoscaler != null ? autoscaler.clamp(nThreads) : nThreads, virtualThreads,
+                linkThreads > 0 ? new Pipeline(linkThreads, parseThreads) : null, autoscaler);
     }
 
     /**
@@ -12,6 +12,6 @@ public final class ReachedEndException extends RuntimeException {
 
     @Override
     public String getMessage() {
-        return scraper + ": " + Thread.currentThread().getName() + " reached end!" + "(" + this + ")";
+        return scraper + ": " + Thread.currentThread().getName() + " reached end!";
     }
 }
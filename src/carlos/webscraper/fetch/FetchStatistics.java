@@ -0,0 +1,122 @@
+package carlos.webscraper.fetch;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe accumulator of download statistics for a single {@link carlos.webscraper.WebScraper}.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see Page
+ */
+public final class FetchStatistics implements Serializable {
+    @Serial
+    private static final long serialVersionUID = -3121765083315947412L;
+    private final LongAdder pages = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder requestNanos = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    /**
+     * Adds the statistics of the given {@link Page}.
+     * @param page downloaded page.
+     */
+    public void record(Page page) {
+        pages.increment();
+        bytes.add(page.bytes());
+        decodeNanos.add(page.decodeNanos());
+    }
+
+    /**
+     * Counts a page which was rejected by a {@link LanguageFilter} before it was downloaded in full.
+     */
+    public void recordRejected() {
+        rejected.increment();
+    }
+
+    /**
+     * Counts a page which the server answered with <code>304 Not Modified</code>.
+     */
+    public void recordNotModified() {
+        notModified.increment();
+    }
+
+    /**
+     * Counts a request, whatever its outcome.
+     * @param nanos time from sending the request until the page was read or the request failed.
+     */
+    public void recordRequest(long nanos) {
+        requests.increment();
+        requestNanos.add(nanos);
+    }
+
+    /**
+     * Counts a request which failed, other than by being throttled.
+     */
+    public void recordFailure() {
+        failures.increment();
+    }
+
+    /**
+     * Counts a request the server throttled, i.e. answered with HTTP 429 or 503.
+     */
+    public void recordThrottled() {
+        throttled.increment();
+    }
+
+    public long pages() {
+        return pages.sum();
+    }
+
+    public long bytes() {
+        return bytes.sum();
+    }
+
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    public long notModified() {
+        return notModified.sum();
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return total time spent on requests, in nanoseconds.
+     */
+    public long requestNanos() {
+        return requestNanos.sum();
+    }
+
+    public long failures() {
+        return failures.sum();
+    }
+
+    public long throttled() {
+        return throttled.sum();
+    }
+
+    /**
+     * @return average time spent decoding a page, in milliseconds.
+     */
+    public double averageDecodeMillis() {
+        return decodeNanos.sum() / (double) Math.max(pages.sum(), 1) / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d pages, %.2f MB (avg decode %.3f ms), %d not modified, %d rejected by language, "
+                        + "%d failed, %d throttled",
+                pages(), bytes() / (1024.0 * 1024.0), averageDecodeMillis(), notModified(), rejected(),
+                failures(), throttled());
+    }
+}
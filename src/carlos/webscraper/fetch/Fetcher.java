@@ -0,0 +1,136 @@
+package carlos.webscraper.fetch;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Strategy used by {@link carlos.webscraper.WebScraper} to download pages.<br/>
+ * Implementations must be thread-safe, a single instance is shared by all threads of a scraper.
+ * <br/>
+ * Interface Implementations:
+ * <ul>
+ *     <li>{@link HttpClientFetcher} - default, asynchronous and HTTP/2 capable</li>
+ *     <li>{@link URLConnectionFetcher} - legacy blocking implementation</li>
+ * </ul>
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see carlos.webscraper.WebScraperBuilder#withFetcher(Fetcher)
+ */
+public interface Fetcher {
+
+    /**
+     * Starts downloading the page at the given url.
+     * @param url url of the page.
+     * @return future completed with the downloaded {@link Page},
+     * or completed exceptionally with an {@link IOException} if the page could not be downloaded.
+     */
+    CompletableFuture<Page> fetchAsync(String url);
+
+    /**
+     * Downloads the page at the given url, blocking the calling {@link Thread} until it is done.
+     * @param url url of the page.
+     * @return downloaded {@link Page}.
+     * @throws IOException if the page could not be downloaded.
+     * @throws InterruptedException if the calling {@link Thread} was interrupted while waiting.
+     */
+    default Page fetch(String url) throws IOException, InterruptedException {
+        try {
+            return fetchAsync(url).get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    /**
+     * Starts downloading the page at the given url, giving up as soon as the page is found to be
+     * in a language not accepted by the filter.
+     * The default implementation downloads the whole page and checks it once it arrives,
+     * implementations override it to check the headers and the first bytes of the page instead.
+     * @param url url of the page.
+     * @param languages accepted languages, null if pages in any language are accepted.
+     * @return future completed with the downloaded {@link Page}, or completed exceptionally
+     * with a {@link LanguageMismatchException} if the page was rejected, or another {@link IOException}
+     * if the page could not be downloaded.
+     */
+    default CompletableFuture<Page> fetchAsync(String url, LanguageFilter languages) {
+        if(languages == null) return fetchAsync(url);
+        return fetchAsync(url).thenApply(page -> {
+            try {
+                return languages.check(page);
+            } catch (LanguageMismatchException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Downloads the page at the given url like {@link Fetcher#fetchAsync(String, LanguageFilter)},
+     * blocking the calling {@link Thread} until it is done.
+     * @param url url of the page.
+     * @param languages accepted languages, null if pages in any language are accepted.
+     * @return downloaded {@link Page}.
+     * @throws LanguageMismatchException if the page is in a language which is not accepted.
+     * @throws IOException if the page could not be downloaded.
+     * @throws InterruptedException if the calling {@link Thread} was interrupted while waiting.
+     */
+    default Page fetch(String url, LanguageFilter languages) throws IOException, InterruptedException {
+        if(languages == null) return fetch(url);
+        try {
+            return fetchAsync(url, languages).get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    /**
+     * Starts downloading the page at the given url, unless it has not changed since the validators were received.
+     * The default implementation ignores the validators, implementations override it to send them as
+     * <code>If-None-Match</code> and <code>If-Modified-Since</code> headers.
+     * @param url url of the page.
+     * @param languages accepted languages, null if pages in any language are accepted.
+     * @param validators validators received with the page before, {@link Validators#NONE} or null if there are none.
+     * @return future completed with the downloaded {@link Page}, or with a {@link Page#isNotModified() not modified}
+     * one if the server answered <code>304 Not Modified</code>.
+     * @see Fetcher#fetchAsync(String, LanguageFilter)
+     */
+    default CompletableFuture<Page> fetchAsync(String url, LanguageFilter languages, Validators validators) {
+        return fetchAsync(url, languages);
+    }
+
+    /**
+     * Downloads the page at the given url like {@link Fetcher#fetchAsync(String, LanguageFilter, Validators)},
+     * blocking the calling {@link Thread} until it is done.
+     * @param url url of the page.
+     * @param languages accepted languages, null if pages in any language are accepted.
+     * @param validators validators received with the page before, {@link Validators#NONE} or null if there are none.
+     * @return downloaded {@link Page}, or a {@link Page#isNotModified() not modified} one.
+     * @throws LanguageMismatchException if the page is in a language which is not accepted.
+     * @throws IOException if the page could not be downloaded.
+     * @throws InterruptedException if the calling {@link Thread} was interrupted while waiting.
+     */
+    default Page fetch(String url, LanguageFilter languages, Validators validators) throws IOException, InterruptedException {
+        if(validators == null || validators.isEmpty()) return fetch(url, languages);
+        try {
+            return fetchAsync(url, languages, validators).get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    /**
+     * Converts the cause of a failed fetch into an {@link IOException}.
+     * @param cause cause of the failure.
+     * @return {@link IOException} describing the failure.
+     */
+    static IOException unwrap(Throwable cause) {
+        if (cause instanceof CompletionException && cause.getCause() != null)
+            cause = cause.getCause();
+        if (cause instanceof IOException e)
+            return e;
+        if (cause instanceof RuntimeException e)
+            throw e;
+        return new IOException(cause);
+    }
+}
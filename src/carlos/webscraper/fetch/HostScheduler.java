@@ -0,0 +1,152 @@
+package carlos.webscraper.fetch;
+
+import carlos.utilities.ParsedUrl;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-host politeness scheduler.<br/>
+ * Every host gets its own token bucket refilled at a fixed rate, and is blocked for a while
+ * whenever it throttles the scraper (HTTP 429 or 503). The block lasts for the server's
+ * <code>Retry-After</code> delay or an exponential backoff, whichever is longer.
+ * A host may also ask for a minimum delay between requests, e.g. the <code>Crawl-delay</code> of its robots.txt.<br/>
+ * The scheduler never sleeps: {@link HostScheduler#tryAcquire(String)} answers immediately so
+ * the caller can move on to a url from another host.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see carlos.webscraper.WebScraperBuilder#withHostRateLimit(double, int)
+ */
+public final class HostScheduler {
+    private static final long BASE_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final Map<String, HostState> hosts = new ConcurrentHashMap<>();
+    private final double permitsPerNano;
+    private final int burst;
+
+    /**
+     * Creates a {@link HostScheduler} which does not limit the request rate, only backs off throttling hosts.
+     */
+    public HostScheduler() {
+        this(Double.POSITIVE_INFINITY, 1);
+    }
+
+    /**
+     * @param permitsPerSecond requests allowed per second for each host.
+     * @param burst amount of requests which can be sent at once after a host has been idle.
+     * @throws IllegalArgumentException if the rate or the burst is not positive.
+     */
+    public HostScheduler(double permitsPerSecond, int burst) throws IllegalArgumentException {
+        if(!(permitsPerSecond > 0)) throw new IllegalArgumentException("permitsPerSecond must be positive!");
+        if(burst < 1) throw new IllegalArgumentException("burst must be greater than 0!");
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+    }
+
+    /**
+     * Takes a permit for the host of the given url if one is available right now.
+     * @param url url about to be requested.
+     * @return true if the url may be requested now.
+     */
+    public boolean tryAcquire(String url) {
+        return state(url).tryAcquire(System.nanoTime());
+    }
+
+    /**
+     * Resets the backoff of the host of the given url after a successful request.
+     * @param url url which was requested.
+     */
+    public void onSuccess(String url) {
+        var state = hosts.get(hostOf(url));
+        if(state != null) state.onSuccess();
+    }
+
+    /**
+     * Makes requests to the host of the given url be at least the given delay apart, on top of the rate limit.
+     * @param url url of the host.
+     * @param delay minimum delay between two requests, zero to remove it.
+     * @see RobotsCache
+     */
+    public void setMinimumDelay(String url, Duration delay) {
+        state(url).setMinimumDelay(delay.toNanos());
+    }
+
+    /**
+     * Blocks the host of the given url after it throttled a request.
+     * @param url url which was requested.
+     * @param retryAfter delay requested by the server.
+     * @return the delay the host is blocked for.
+     */
+    public Duration onThrottled(String url, Optional<Duration> retryAfter) {
+        long requested = retryAfter.map(Duration::toNanos).orElse(0L);
+        return Duration.ofNanos(state(url).onThrottled(System.nanoTime(), requested));
+    }
+
+    /**
+     * @return amount of hosts currently blocked after throttling.
+     */
+    public long blockedHosts() {
+        long now = System.nanoTime();
+        return hosts.values().stream().filter(s -> s.isBlocked(now)).count();
+    }
+
+    private HostState state(String url) {
+        return hosts.computeIfAbsent(hostOf(url), h -> new HostState());
+    }
+
+    /**
+     * Retrieves the lower case host (without port or user info) of the given url
+     * from the interned host table of {@link ParsedUrl}.
+     * @param url absolute url.
+     * @return interned host name, or the whole url if it has no recognisable host.
+     */
+    static String hostOf(String url) {
+        var parsed = ParsedUrl.tryParse(url);
+        return parsed == null ? url : parsed.host().name();
+    }
+
+    private final class HostState {
+        private double tokens = burst;
+        private long lastRefill = System.nanoTime();
+        private long blockedUntil = lastRefill;
+        private long minimumDelay;
+        private long lastAcquired = lastRefill - Long.MAX_VALUE / 2;
+        private int failures;
+
+        synchronized boolean tryAcquire(long now) {
+            if(isBlocked(now) || now - lastAcquired < minimumDelay) return false;
+            if(permitsPerNano != Double.POSITIVE_INFINITY) {
+                tokens = Math.min(burst, tokens + (now - lastRefill) * permitsPerNano);
+                lastRefill = now;
+                if(tokens < 1) return false;
+                tokens--;
+            }
+            lastAcquired = now;
+            return true;
+        }
+
+        synchronized void setMinimumDelay(long nanos) {
+            minimumDelay = Math.max(nanos, 0);
+        }
+
+        synchronized void onSuccess() {
+            failures = 0;
+        }
+
+        synchronized long onThrottled(long now, long requestedNanos) {
+            long backoff = Math.min(BASE_BACKOFF_NANOS << Math.min(failures++, 20), MAX_BACKOFF_NANOS);
+            long delay = Math.max(backoff, requestedNanos);
+            blockedUntil = now + delay;
+            tokens = 0;
+            return delay;
+        }
+
+        synchronized boolean isBlocked(long now) {
+            return now - blockedUntil < 0;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package carlos.webscraper.fetch;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Default {@link Fetcher} implementation built on {@link HttpClient#sendAsync}.<br/>
+ * All instances created without an explicit {@link HttpClient} share a single HTTP/2 capable client,
+ * so connections are pooled (and multiplexed where the server allows it) across every
+ * {@link carlos.webscraper.WebScraper} in the JVM.
+ * The amount of requests in flight per {@link HttpClientFetcher} is capped. Requests past the cap are queued
+ * and sent as soon as a slot frees up, {@link HttpClientFetcher#fetchAsync(String)} never blocks the caller.<br/>
+ * The request timeout only covers the response headers, the whole page must arrive within
+ * {@link HttpClientFetcher#BODY_TIMEOUT_FACTOR} times the request timeout, or the download is cancelled.
+ * Redirects are followed, and the {@link Page} has the url it was finally found at.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see Fetcher
+ */
+public final class HttpClientFetcher implements Fetcher {
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(5);
+    public static final int DEFAULT_MAX_REQUESTS_IN_FLIGHT = 64;
+    public static final int BODY_TIMEOUT_FACTOR = 4;
+    private static final int NOT_MODIFIED = 304;
+    private static final HttpClient SHARED_CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(DEFAULT_TIMEOUT)
+            .build();
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final Semaphore inFlight;
+    private final Queue<CompletableFuture<Void>> waitingForSlot = new ConcurrentLinkedQueue<>();
+    private final int maxRequestsInFlight;
+
+    /**
+     * Creates a new {@link HttpClientFetcher} using the shared client, {@link HttpClientFetcher#DEFAULT_TIMEOUT}
+     * and {@link HttpClientFetcher#DEFAULT_MAX_REQUESTS_IN_FLIGHT}.
+     */
+    public HttpClientFetcher() {
+        this(DEFAULT_TIMEOUT, DEFAULT_MAX_REQUESTS_IN_FLIGHT);
+    }
+
+    /**
+     * Creates a new {@link HttpClientFetcher} using the shared client.
+     * @param requestTimeout timeout of each individual request.
+     * @param maxRequestsInFlight maximum amount of requests awaiting a response at once.
+     * @throws IllegalArgumentException if the timeout or the maximum is not positive.
+     */
+    public HttpClientFetcher(Duration requestTimeout, int maxRequestsInFlight) throws IllegalArgumentException {
+        this(SHARED_CLIENT, requestTimeout, maxRequestsInFlight);
+    }
+
+    /**
+     * Creates a new {@link HttpClientFetcher} using a custom {@link HttpClient}.
+     * @param client client to send requests with.
+     * @param requestTimeout timeout of each individual request.
+     * @param maxRequestsInFlight maximum amount of requests awaiting a response at once.
+     * @throws NullPointerException if the client or timeout is null.
+     * @throws IllegalArgumentException if the timeout or the maximum is not positive.
+     */
+    public HttpClientFetcher(HttpClient client, Duration requestTimeout, int maxRequestsInFlight)
+            throws NullPointerException, IllegalArgumentException {
+        if(requestTimeout.isNegative() || requestTimeout.isZero())
+            throw new IllegalArgumentException("requestTimeout must be positive!");
+        if(maxRequestsInFlight < 1)
+            throw new IllegalArgumentException("maxRequestsInFlight must be greater than 0!");
+        this.client = Objects.requireNonNull(client);
+        this.requestTimeout = requestTimeout;
+        this.maxRequestsInFlight = maxRequestsInFlight;
+        this.inFlight = new Semaphore(maxRequestsInFlight);
+    }
+
+    @Override
+    public CompletableFuture<Page> fetchAsync(String url) {
+        return fetchAsync(url, null);
+    }
+
+    /**
+     * Checks the <code>Content-Language</code> header before subscribing to the body, and the start of the body
+     * as it arrives, cancelling the download as soon as the page is rejected.
+     */
+    @Override
+    public CompletableFuture<Page> fetchAsync(String url, LanguageFilter languages) {
+        return fetchAsync(url, languages, Validators.NONE);
+    }
+
+    /**
+     * Sends the validators as <code>If-None-Match</code> and <code>If-Modified-Since</code> headers,
+     * a <code>304 Not Modified</code> answer has no body to download.
+     */
+    @Override
+    public CompletableFuture<Page> fetchAsync(String url, LanguageFilter languages, Validators validators) {
+        HttpRequest request;
+        try {
+            var builder = HttpRequest.newBuilder(URI.create(url)).timeout(requestTimeout).GET();
+            if(validators != null && validators.etag() != null)
+                builder.header("If-None-Match", validators.etag());
+            if(validators != null && validators.lastModified() != null)
+                builder.header("If-Modified-Since", validators.ifModifiedSince());
+            request = builder.build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new IOException(e.getMessage(), e));
+        }
+        return acquireSlot().thenCompose(slot -> send(url, request, languages, validators));
+    }
+
+    private CompletableFuture<Page> send(String url, HttpRequest request, LanguageFilter languages, Validators validators) {
+        var sent = client.sendAsync(request, info -> bodySubscriber(url, info, languages));
+        long deadline = requestTimeout.toMillis() * BODY_TIMEOUT_FACTOR;
+        return sent.thenApply(response -> pageOf(url, response, validators))
+                .orTimeout(deadline, TimeUnit.MILLISECONDS)
+                .handle((page, e) -> {
+                    releaseSlot();
+                    if(e == null) return page;
+                    if(!(e instanceof TimeoutException)) throw e instanceof CompletionException c ? c : new CompletionException(e);
+                    sent.cancel(true);
+                    throw new CompletionException(new HttpTimeoutException(url + " did not arrive within " + deadline + " ms"));
+                });
+    }
+
+    /**
+     * @return future completed once a request may be sent, right away if fewer than the maximum are in flight.
+     */
+    private CompletableFuture<Void> acquireSlot() {
+        var slot = new CompletableFuture<Void>();
+        waitingForSlot.add(slot);
+        grantSlots();
+        return slot;
+    }
+
+    private void releaseSlot() {
+        inFlight.release();
+        grantSlots();
+    }
+
+    /**
+     * Hands free slots to queued requests. Both queueing and releasing check the other side afterwards,
+     * so no request is left waiting while a slot is free.
+     */
+    private void grantSlots() {
+        while(!waitingForSlot.isEmpty() && inFlight.tryAcquire()) {
+            var slot = waitingForSlot.poll();
+            if(slot == null) inFlight.release();
+            else slot.complete(null);
+        }
+    }
+
+    /**
+     * @return amount of requests currently awaiting a response.
+     */
+    public int requestsInFlight() {
+        return maxRequestsInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * @return amount of requests queued until a slot frees up.
+     */
+    public int requestsWaiting() {
+        return waitingForSlot.size();
+    }
+
+    private static HttpResponse.BodySubscriber<Page> bodySubscriber(String url, HttpResponse.ResponseInfo info,
+                                                                   LanguageFilter languages) {
+        if(!isSuccessful(info.statusCode()))
+            return HttpResponse.BodySubscribers.replacing(null);
+        var subscriber = new PageSubscriber(url, info.headers().firstValue("Content-Type").orElse(null), languages);
+        if(languages != null) {
+            try {
+                if(languages.checkHeader(url, info.headers().firstValue("Content-Language").orElse(null)))
+                    subscriber.languages = null;
+            } catch (LanguageMismatchException e) {
+                subscriber.rejected = e;
+            }
+        }
+        return subscriber;
+    }
+
+    private static Page pageOf(String url, HttpResponse<Page> response, Validators sent) {
+        if(response.statusCode() == NOT_MODIFIED && sent != null && !sent.isEmpty())
+            return Page.notModified(url, sent);
+        if(!isSuccessful(response.statusCode()))
+            throw new CompletionException(new HttpStatusException(url, response.statusCode(),
+                    response.headers().firstValue("Retry-After").orElse(null)));
+        var headers = response.headers();
+        return response.body().withUrl(response.uri().toString())
+                .withValidators(Validators.of(headers.firstValue("ETag").orElse(null),
+                        headers.firstValue("Last-Modified").orElse(null)));
+    }
+
+    private static boolean isSuccessful(int statusCode) {
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    /**
+     * Collects the response body into a pooled {@link PageReader.PageBuffer} as it arrives
+     * and decodes it once the body is complete.
+     * With a {@link LanguageFilter}, the subscription is cancelled as soon as the page is rejected.
+     */
+    private static final class PageSubscriber implements HttpResponse.BodySubscriber<Page> {
+        private final CompletableFuture<Page> page = new CompletableFuture<>();
+        private final PageReader.PageBuffer buffer = new PageReader.PageBuffer();
+        private final String url;
+        private final String contentType;
+        private LanguageFilter languages;
+        private LanguageMismatchException rejected;
+        private Flow.Subscription subscription;
+
+        private PageSubscriber(String url, String contentType, LanguageFilter languages) {
+            this.url = url;
+            this.contentType = contentType;
+            this.languages = languages;
+        }
+
+        @Override
+        public CompletionStage<Page> getBody() {
+            return page;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if(rejected != null) reject(rejected);
+            else subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if(page.isDone()) return;
+            for(var item : items)
+                buffer.append(item);
+            checkLanguage(false);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            buffer.release();
+            page.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if(page.isDone()) return;
+            try {
+                checkLanguage(true);
+                if(!page.isDone()) page.complete(buffer.decode(url, contentType));
+            } finally {
+                buffer.release();
+            }
+        }
+
+        private void checkLanguage(boolean complete) {
+            if(languages == null) return;
+            try {
+                if(buffer.checkLanguage(url, languages, complete)) languages = null;
+            } catch (LanguageMismatchException e) {
+                reject(e);
+            }
+        }
+
+        private void reject(LanguageMismatchException e) {
+            subscription.cancel();
+            buffer.release();
+            page.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package carlos.webscraper.fetch;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+
+/**
+ * {@link IOException} thrown by a {@link Fetcher} when the server answers with a non-successful status code.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see HostScheduler
+ */
+public final class HttpStatusException extends IOException {
+    @Serial
+    private static final long serialVersionUID = 2862304755301846513L;
+    private final int statusCode;
+    private final Duration retryAfter;
+
+    /**
+     * @param url url which was requested.
+     * @param statusCode status code of the response.
+     * @param retryAfter value of the <code>Retry-After</code> header, may be null.
+     */
+    public HttpStatusException(String url, int statusCode, String retryAfter) {
+        super("Server returned HTTP response code: " + statusCode + " for URL: " + url);
+        this.statusCode = statusCode;
+        this.retryAfter = parseRetryAfter(retryAfter);
+    }
+
+    public int statusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return delay requested by the server through the <code>Retry-After</code> header, if any.
+     */
+    public Optional<Duration> retryAfter() {
+        return Optional.ofNullable(retryAfter);
+    }
+
+    /**
+     * @return true if the server signalled that it is receiving too many requests (429 or 503).
+     */
+    public boolean isThrottling() {
+        return statusCode == 429 || statusCode == 503;
+    }
+
+    /**
+     * Parses a <code>Retry-After</code> header given either in seconds or as an HTTP-date.
+     * @param value header value, may be null.
+     * @return parsed delay, null if the value is absent or malformed.
+     */
+    static Duration parseRetryAfter(String value) {
+        if(value == null || value.isBlank()) return null;
+        value = value.trim();
+        try {
+            return Duration.ofSeconds(Math.max(Long.parseLong(value), 0));
+        } catch (NumberFormatException ignored) {
+            // not delta-seconds, try HTTP-date
+        }
+        try {
+            var delay = Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME));
+            return delay.isNegative() ? Duration.ZERO : delay;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
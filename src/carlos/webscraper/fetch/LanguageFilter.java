@@ -0,0 +1,169 @@
+package carlos.webscraper.fetch;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+
+/**
+ * Fetch-time filter which rejects pages declared to be in a language not accepted by it,
+ * before they are downloaded in full and parsed.<br/>
+ * The language is taken from the <code>Content-Language</code> header or, if there is none, from the
+ * <code>lang</code> (or <code>xml:lang</code>) attribute of the <code>&lt;html&gt;</code> tag within the first
+ * {@link LanguageFilter#SNIFF_LIMIT} bytes of the page. Only primary subtags are compared,
+ * so <code>en-GB</code> is accepted by a filter of <code>en</code>.
+ * Pages which declare no language are accepted.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see LanguageMismatchException
+ * @see Fetcher#fetchAsync(String, LanguageFilter)
+ */
+public final class LanguageFilter implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 7480163945521877309L;
+    static final int SNIFF_LIMIT = 4 * 1024;
+
+    private final HashSet<String> languages = new HashSet<>();
+
+    /**
+     * @param languages accepted language tags, e.g. "en" or "de".
+     * @throws IllegalArgumentException if no language is given.
+     * @throws NullPointerException if any of the languages is null.
+     */
+    public LanguageFilter(Collection<String> languages) throws IllegalArgumentException, NullPointerException {
+        for(var language : languages)
+            this.languages.add(primarySubtag(language, 0, language.length()));
+        this.languages.remove("");
+        if(this.languages.isEmpty()) throw new IllegalArgumentException("at least one language must be accepted!");
+    }
+
+    /**
+     * @param language language tag, e.g. "en-US".
+     * @return true if the primary subtag of the language is accepted, or the tag is empty.
+     */
+    public boolean accepts(String language) {
+        var primary = primarySubtag(language, 0, language.length());
+        return primary.isEmpty() || languages.contains(primary);
+    }
+
+    /**
+     * Checks the <code>Content-Language</code> header, a page in any of the listed languages is accepted.
+     * @param url url of the page.
+     * @param contentLanguage value of the header, may be null.
+     * @return true if the header decided the page is accepted, false if it declares no language.
+     * @throws LanguageMismatchException if none of the listed languages is accepted.
+     */
+    public boolean checkHeader(String url, String contentLanguage) throws LanguageMismatchException {
+        if(contentLanguage == null) return false;
+        boolean declared = false;
+        for(int start = 0, end; start < contentLanguage.length(); start = end + 1) {
+            end = contentLanguage.indexOf(',', start);
+            if(end < 0) end = contentLanguage.length();
+            var primary = primarySubtag(contentLanguage, start, end);
+            if(primary.isEmpty()) continue;
+            if(languages.contains(primary)) return true;
+            declared = true;
+        }
+        if(declared) throw new LanguageMismatchException(url, contentLanguage.trim());
+        return false;
+    }
+
+    /**
+     * Checks the <code>&lt;html lang&gt;</code> attribute within the start of a page.
+     * @param url url of the page.
+     * @param prefix start of the page, bytes are read as ISO-8859-1 characters.
+     * @param complete true if the prefix is the whole page.
+     * @return true if the page is accepted, false if more of the page is needed to decide.
+     * @throws LanguageMismatchException if the page declares a language which is not accepted.
+     */
+    public boolean checkPage(String url, CharSequence prefix, boolean complete) throws LanguageMismatchException {
+        int length = Math.min(prefix.length(), SNIFF_LIMIT);
+        boolean undecided = !complete && prefix.length() < SNIFF_LIMIT;
+        int tag = indexOfHtmlTag(prefix, length);
+        if(tag < 0) return !undecided;
+        int end = indexOf(prefix, '>', tag, length);
+        if(end < 0) return !undecided;
+        var language = langAttribute(prefix, tag + 5, end);
+        if(language != null && !accepts(language)) throw new LanguageMismatchException(url, language);
+        return true;
+    }
+
+    /**
+     * Checks the start of a downloaded page, used when the page could not be checked while downloading.
+     * @param page downloaded page.
+     * @return the page.
+     * @throws LanguageMismatchException if the page declares a language which is not accepted.
+     */
+    public Page check(Page page) throws LanguageMismatchException {
+        checkPage(page.url(), page.html(), true);
+        return page;
+    }
+
+    private static int indexOfHtmlTag(CharSequence s, int length) {
+        for(int i = 0; i + 5 <= length; i++) {
+            if(s.charAt(i) == '<' && regionMatchesLowercase(s, i + 1, "html")
+                    && (i + 5 == length || !Character.isLetterOrDigit(s.charAt(i + 5))))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return value of the lang or xml:lang attribute within [from, to), null if there is none.
+     */
+    private static String langAttribute(CharSequence s, int from, int to) {
+        for(int i = from; i + 4 <= to; i++) {
+            if(!regionMatchesLowercase(s, i, "lang")) continue;
+            char before = s.charAt(i - 1);
+            if(!Character.isWhitespace(before) && before != ':') continue;
+            int j = i + 4;
+            while(j < to && Character.isWhitespace(s.charAt(j)))
+                j++;
+            if(j == to || s.charAt(j) != '=') continue;
+            j++;
+            while(j < to && Character.isWhitespace(s.charAt(j)))
+                j++;
+            if(j == to) return null;
+            char quote = s.charAt(j);
+            int valueEnd;
+            if(quote == '"' || quote == '\'') {
+                valueEnd = indexOf(s, quote, ++j, to);
+                if(valueEnd < 0) valueEnd = to;
+            } else {
+                valueEnd = j;
+                while(valueEnd < to && !Character.isWhitespace(s.charAt(valueEnd)) && s.charAt(valueEnd) != '/')
+                    valueEnd++;
+            }
+            return s.subSequence(j, valueEnd).toString();
+        }
+        return null;
+    }
+
+    private static String primarySubtag(CharSequence tag, int from, int to) {
+        while(from < to && Character.isWhitespace(tag.charAt(from)))
+            from++;
+        int end = from;
+        while(end < to && Character.isLetter(tag.charAt(end)))
+            end++;
+        return tag.subSequence(from, end).toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean regionMatchesLowercase(CharSequence s, int from, String lowercase) {
+        if(from + lowercase.length() > s.length()) return false;
+        for(int i = 0; i < lowercase.length(); i++)
+            if(Character.toLowerCase(s.charAt(from + i)) != lowercase.charAt(i)) return false;
+        return true;
+    }
+
+    private static int indexOf(CharSequence s, char c, int from, int to) {
+        for(int i = from; i < to; i++)
+            if(s.charAt(i) == c) return i;
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return "LanguageFilter" + languages;
+    }
+}
@@ -0,0 +1,30 @@
+package carlos.webscraper.fetch;
+
+import java.io.IOException;
+import java.io.Serial;
+
+/**
+ * {@link IOException} thrown by a {@link Fetcher} when a page is declared to be in a language
+ * not accepted by the {@link LanguageFilter}. The download is aborted as soon as the language is known.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see LanguageFilter
+ */
+public final class LanguageMismatchException extends IOException {
+    @Serial
+    private static final long serialVersionUID = -6011409672390526783L;
+    private final String language;
+
+    /**
+     * @param url url which was requested.
+     * @param language language the page is declared to be in.
+     */
+    public LanguageMismatchException(String url, String language) {
+        super("Page is in language: " + language + " for URL: " + url);
+        this.language = language;
+    }
+
+    public String language() {
+        return language;
+    }
+}
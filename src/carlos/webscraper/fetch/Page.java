@@ -0,0 +1,126 @@
+package carlos.webscraper.fetch;
+
+import java.nio.charset.Charset;
+
+/**
+ * Decoded HTML page together with the download statistics gathered while reading it,
+ * and the {@link Validators} the server sent for it.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see PageReader
+ */
+public final class Page {
+    public static final Page EMPTY = new Page("", "", 0, Charset.defaultCharset(), 0);
+
+    private final String url;
+    private final String html;
+    private final int bytes;
+    private final Charset charset;
+    private final long decodeNanos;
+    private final Validators validators;
+    private final boolean notModified;
+
+    Page(String url, String html, int bytes, Charset charset, long decodeNanos) {
+        this(url, html, bytes, charset, decodeNanos, Validators.NONE, false);
+    }
+
+    private Page(String url, String html, int bytes, Charset charset, long decodeNanos,
+                 Validators validators, boolean notModified) {
+        this.url = url;
+        this.html = html;
+        this.bytes = bytes;
+        this.charset = charset;
+        this.decodeNanos = decodeNanos;
+        this.validators = validators;
+        this.notModified = notModified;
+    }
+
+    /**
+     * Creates an empty {@link Page} for the given url, used when the download failed.
+     * @param url url which was requested.
+     * @return empty {@link Page}.
+     */
+    public static Page empty(String url) {
+        return new Page(url, "", 0, EMPTY.charset, 0);
+    }
+
+    /**
+     * Creates an empty {@link Page} for a url the server answered with <code>304 Not Modified</code>.
+     * @param url url which was requested.
+     * @param validators validators which were sent with the request.
+     * @return empty, not modified {@link Page}.
+     */
+    public static Page notModified(String url, Validators validators) {
+        return new Page(url, "", 0, EMPTY.charset, 0, validators, true);
+    }
+
+    /**
+     * @param url url the page was found at after following redirects.
+     * @return this page with the given url.
+     */
+    Page withUrl(String url) {
+        return url.equals(this.url) ? this : new Page(url, html, bytes, charset, decodeNanos, validators, notModified);
+    }
+
+    /**
+     * @param validators validators sent by the server.
+     * @return this page with the given validators.
+     */
+    Page withValidators(Validators validators) {
+        return validators.isEmpty() ? this : new Page(url, html, bytes, charset, decodeNanos, validators, notModified);
+    }
+
+    public String url() {
+        return url;
+    }
+
+    public String html() {
+        return html;
+    }
+
+    /**
+     * @return amount of raw bytes downloaded for this page.
+     */
+    public int bytes() {
+        return bytes;
+    }
+
+    /**
+     * @return {@link Charset} the page was decoded with.
+     */
+    public Charset charset() {
+        return charset;
+    }
+
+    /**
+     * @return time spent decoding the raw bytes into {@link Page#html()}, in nanoseconds.
+     */
+    public long decodeNanos() {
+        return decodeNanos;
+    }
+
+    /**
+     * @return validators sent by the server, {@link Validators#NONE} if there were none.
+     */
+    public Validators validators() {
+        return validators;
+    }
+
+    /**
+     * @return true if the server answered <code>304 Not Modified</code>, the page then has no content.
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    public boolean isEmpty() {
+        return html.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        if(notModified) return url + " (not modified)";
+        return url + " (" + bytes + " bytes, " + charset + ", decoded in "
+                + String.format("%.3f", decodeNanos / 1_000_000.0) + " ms)";
+    }
+}
@@ -0,0 +1,165 @@
+package carlos.webscraper.fetch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Reads raw page bytes in bulk into pooled buffers and decodes them with the charset
+ * declared by the server or by the page itself.<br/>
+ * Charset resolution order:
+ * <ol>
+ *     <li><code>charset</code> parameter of the <code>Content-Type</code> header</li>
+ *     <li><code>&lt;meta charset&gt;</code> or <code>&lt;meta http-equiv="Content-Type"&gt;</code>
+ *     within the first {@link PageReader#SNIFF_LIMIT} bytes</li>
+ *     <li>{@link StandardCharsets#UTF_8}</li>
+ * </ol>
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see Page
+ */
+public final class PageReader {
+    static final int SNIFF_LIMIT = 1024;
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final int INITIAL_BUFFER_SIZE = 256 * 1024;
+    private static final int MAX_POOLED_BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 64;
+    private static final Pattern HEADER_CHARSET = Pattern.compile("(?i)charset\\s*=\\s*[\"']?([A-Za-z0-9._:-]+)");
+    private static final Pattern META_CHARSET = Pattern.compile("(?i)<meta[^>]+?charset\\s*=\\s*[\"']?([A-Za-z0-9._:-]+)");
+    private static final Queue<byte[]> POOL = new ConcurrentLinkedQueue<>();
+
+    private PageReader() {}
+
+    /**
+     * Reads the whole stream and decodes it into a {@link Page}.
+     * The stream is not closed by this method.
+     * @param url url the stream belongs to.
+     * @param in stream of raw page bytes.
+     * @param contentType value of the <code>Content-Type</code> header, may be null.
+     * @return decoded {@link Page}.
+     * @throws IOException if reading from the stream fails.
+     */
+    public static Page read(String url, InputStream in, String contentType) throws IOException {
+        return read(url, in, contentType, null);
+    }
+
+    /**
+     * Reads the stream and decodes it into a {@link Page}, stopping as soon as the start of the page
+     * declares a language not accepted by the filter.
+     * The stream is not closed by this method.
+     * @param url url the stream belongs to.
+     * @param in stream of raw page bytes.
+     * @param contentType value of the <code>Content-Type</code> header, may be null.
+     * @param languages accepted languages, null if pages in any language are accepted.
+     * @return decoded {@link Page}.
+     * @throws LanguageMismatchException if the page is in a language which is not accepted.
+     * @throws IOException if reading from the stream fails.
+     * @see LanguageFilter#checkPage(String, CharSequence, boolean)
+     */
+    public static Page read(String url, InputStream in, String contentType, LanguageFilter languages) throws IOException {
+        var buffer = new PageBuffer();
+        try {
+            buffer.readFrom(in, url, languages);
+            return buffer.decode(url, contentType);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Resolves the {@link Charset} of the page from the header first and the page prefix second.
+     * @param buffer raw page bytes.
+     * @param length amount of valid bytes in the buffer.
+     * @param contentType value of the <code>Content-Type</code> header, may be null.
+     * @return resolved {@link Charset}, {@link StandardCharsets#UTF_8} if none is declared or supported.
+     */
+    static Charset resolveCharset(byte[] buffer, int length, String contentType) {
+        var charset = contentType == null ? null : charsetFrom(contentType, HEADER_CHARSET);
+        if (charset == null)
+            charset = charsetFrom(new String(buffer, 0, Math.min(length, SNIFF_LIMIT), StandardCharsets.ISO_8859_1), META_CHARSET);
+        return charset == null ? StandardCharsets.UTF_8 : charset;
+    }
+
+    private static Charset charsetFrom(String s, Pattern pattern) {
+        var m = pattern.matcher(s);
+        if (m.find()) {
+            try {
+                return Charset.forName(m.group(1));
+            } catch (IllegalArgumentException ignored) {
+                // unknown or illegal charset name, fall through to the next candidate
+            }
+        }
+        return null;
+    }
+
+    static byte[] acquire() {
+        var buffer = POOL.poll();
+        return buffer != null ? buffer : new byte[INITIAL_BUFFER_SIZE];
+    }
+
+    static void release(byte[] buffer) {
+        if (buffer.length <= MAX_POOLED_BUFFER_SIZE && POOL.size() < MAX_POOLED_BUFFERS)
+            POOL.offer(buffer);
+    }
+
+    /**
+     * Growable byte buffer backed by the {@link PageReader} pool.
+     * Must be {@link PageBuffer#release() released} once the page is decoded.
+     */
+    static final class PageBuffer {
+        private byte[] bytes = acquire();
+        private int length;
+
+        void readFrom(InputStream in, String url, LanguageFilter languages) throws IOException {
+            int n;
+            while (true) {
+                ensureCapacity(CHUNK_SIZE);
+                if ((n = in.read(bytes, length, bytes.length - length)) == -1)
+                    break;
+                length += n;
+                if (languages != null && checkLanguage(url, languages, false)) languages = null;
+            }
+            if (languages != null) checkLanguage(url, languages, true);
+        }
+
+        /**
+         * Checks the language declared by the bytes read so far.
+         * @return true if the page is accepted, false if more bytes are needed to decide.
+         * @throws LanguageMismatchException if the page is in a language which is not accepted.
+         */
+        boolean checkLanguage(String url, LanguageFilter languages, boolean complete) throws LanguageMismatchException {
+            var prefix = new String(bytes, 0, Math.min(length, LanguageFilter.SNIFF_LIMIT), StandardCharsets.ISO_8859_1);
+            return languages.checkPage(url, prefix, complete);
+        }
+
+        void append(ByteBuffer chunk) {
+            ensureCapacity(chunk.remaining());
+            int n = chunk.remaining();
+            chunk.get(bytes, length, n);
+            length += n;
+        }
+
+        Page decode(String url, String contentType) {
+            long start = System.nanoTime();
+            var charset = resolveCharset(bytes, length, contentType);
+            var html = new String(bytes, 0, length, charset);
+            return new Page(url, html, length, charset, System.nanoTime() - start);
+        }
+
+        void release() {
+            if (bytes != null) PageReader.release(bytes);
+            bytes = null;
+        }
+
+        private void ensureCapacity(int n) {
+            if (bytes.length - length < n)
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, length + n));
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package carlos.webscraper.fetch;
+
+import carlos.utilities.ParsedUrl;
+
+import java.nio.CharBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Cache of the robots.txt rules of every host a crawler links to, deciding which urls may be queued.<br/>
+ * The robots.txt of a host is fetched once, compiled into {@link RobotsRules} and kept for a time to live,
+ * the least recently used hosts being evicted once the capacity is reached.
+ * Urls are never checked with a blocking lookup: urls of a host with cached rules are decided right away,
+ * urls of a host whose rules are still being fetched wait in the cache and are decided once they arrive.
+ * Expired rules keep answering while they are fetched again.
+ * {@link HttpClientFetcher} queues requests past its limit without blocking, a {@link Fetcher} which blocks
+ * in {@link Fetcher#fetchAsync(String)} makes the first url of a host wait for its robots.txt request to start.<br/>
+ * Following RFC 9309, a robots.txt answered with a client error (4xx) allows everything, while a host
+ * whose robots.txt cannot be fetched, or answers with a server error, is treated as disallowing everything
+ * for a short while. The <code>Crawl-delay</code> of a host is handed to the {@link HostScheduler}.<br/>
+ * Rules are cached per host, the robots.txt of the first scheme and port seen for a host applies to all of them.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see RobotsRules
+ * @see carlos.webscraper.WebScraperBuilder#respectRobotsTxt(String)
+ */
+public final class RobotsCache {
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofHours(24);
+    public static final int DEFAULT_CAPACITY = 10_000;
+    private static final long UNREACHABLE_TIME_TO_LIVE_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final String ROBOTS_PATH = "/robots.txt";
+
+    private final Fetcher fetcher;
+    private final HostScheduler hostScheduler;
+    private final String userAgent;
+    private final long timeToLiveNanos;
+    private final Map<ParsedUrl.Host, Entry> entries;
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * Creates a {@link RobotsCache} keeping {@link RobotsCache#DEFAULT_CAPACITY} hosts
+     * for {@link RobotsCache#DEFAULT_TIME_TO_LIVE}.
+     * @param fetcher fetcher used to download robots.txt files.
+     * @param hostScheduler scheduler receiving the <code>Crawl-delay</code> of each host, may be null.
+     * @param userAgent user agent whose rules are followed, "*" to follow only the rules for every crawler.
+     * @throws NullPointerException if the fetcher or the user agent is null.
+     */
+    public RobotsCache(Fetcher fetcher, HostScheduler hostScheduler, String userAgent) throws NullPointerException {
+        this(fetcher, hostScheduler, userAgent, DEFAULT_TIME_TO_LIVE, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param fetcher fetcher used to download robots.txt files.
+     * @param hostScheduler scheduler receiving the <code>Crawl-delay</code> of each host, may be null.
+     * @param userAgent user agent whose rules are followed, "*" to follow only the rules for every crawler.
+     * @param timeToLive how long the rules of a host are used before they are fetched again.
+     * @param capacity amount of hosts whose rules are kept.
+     * @throws IllegalArgumentException if the time to live or the capacity is not positive.
+     * @throws NullPointerException if the fetcher, the user agent or the time to live is null.
+     */
+    public RobotsCache(Fetcher fetcher, HostScheduler hostScheduler, String userAgent, Duration timeToLive, int capacity)
+            throws IllegalArgumentException, NullPointerException {
+        if(timeToLive.isNegative() || timeToLive.isZero()) throw new IllegalArgumentException("timeToLive must be positive!");
+        if(capacity < 1) throw new IllegalArgumentException("capacity must be greater than 0!");
+        this.fetcher = Objects.requireNonNull(fetcher);
+        this.hostScheduler = hostScheduler;
+        this.userAgent = Objects.requireNonNull(userAgent);
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ParsedUrl.Host, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Hands the url to the consumer if the robots.txt of its host allows it, without waiting for the robots.txt
+     * to download. If the rules of the host are not known yet, the url waits until they are fetched, and is then
+     * handed to the consumer on the thread which completed the fetch.
+     * Urls which are not absolute http or https urls are handed over as they are.
+     * @param url absolute url.
+     * @param admitted consumer of allowed urls, e.g. a queue of urls to be visited.
+     */
+    public void admit(String url, Consumer<String> admitted) {
+        var parsed = ParsedUrl.tryParse(url);
+        if(parsed == null) {
+            admitted.accept(url);
+            return;
+        }
+        RobotsRules rules;
+        Entry fetch = null;
+        long now = System.nanoTime();
+        synchronized (this) {
+            var entry = entries.get(parsed.host());
+            if(entry == null) {
+                entries.put(parsed.host(), fetch = entry = new Entry());
+            } else if(entry.rules != null && now - entry.expiresAt >= 0 && !entry.refreshing) {
+                entry.refreshing = true;
+                fetch = entry;
+            }
+            rules = entry.rules;
+            if(rules == null) {
+                entry.waiting.add(new Waiting(url, admitted));
+                waiting.incrementAndGet();
+            }
+        }
+        if(fetch != null) fetchRules(parsed, fetch);
+        if(rules != null && allows(rules, parsed)) admitted.accept(url);
+    }
+
+    /**
+     * Tests the url against the cached rules of its host, without fetching them.
+     * @param url absolute url.
+     * @return true if the url is allowed, or its host's rules are not cached.
+     */
+    public boolean isAllowed(String url) {
+        var parsed = ParsedUrl.tryParse(url);
+        if(parsed == null) return true;
+        RobotsRules rules;
+        synchronized (this) {
+            var entry = entries.get(parsed.host());
+            rules = entry == null ? null : entry.rules;
+        }
+        return rules == null || allows(rules, parsed);
+    }
+
+    /**
+     * @return true if any url is waiting for the rules of its host to be fetched.
+     */
+    public boolean hasWaitingUrls() {
+        return waiting.get() > 0;
+    }
+
+    public String userAgent() {
+        return userAgent;
+    }
+
+    private static boolean allows(RobotsRules rules, ParsedUrl url) {
+        var s = url.url();
+        if(url.pathStart() == url.queryStart())
+            return rules.allows("/" + s.substring(url.queryStart(), url.fragmentStart()));
+        return rules.allows(CharBuffer.wrap(s, url.pathStart(), url.fragmentStart()));
+    }
+
+    private void fetchRules(ParsedUrl url, Entry entry) {
+        var robotsUrl = url.scheme() + "://" + url.host().name()
+                + (url.hasExplicitPort() ? ":" + url.port() : "") + ROBOTS_PATH;
+        CompletableFuture<Page> fetch;
+        try {
+            fetch = fetcher.fetchAsync(robotsUrl);
+        } catch (RuntimeException e) {
+            fetch = CompletableFuture.failedFuture(e);
+        }
+        fetch.whenComplete((page, e) -> update(url, entry, rulesOf(page, e)));
+    }
+
+    /**
+     * @param page downloaded robots.txt, null if the download failed.
+     * @param e exception the download failed with.
+     * @return rules of the robots.txt, null if the host is to be treated as unreachable.
+     */
+    private RobotsRules rulesOf(Page page, Throwable e) {
+        try {
+            if(e == null) return RobotsRules.parse(page.html(), userAgent);
+            var cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if(cause instanceof HttpStatusException status && status.statusCode() >= 400
+                    && status.statusCode() < 500 && !status.isThrottling())
+                return RobotsRules.ALLOW_ALL;
+        } catch (RuntimeException parseException) {
+            parseException.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Stores fetched rules and decides the urls which were waiting for them.
+     * A consumer failing on one url does not keep the other urls waiting.
+     * @param rules fetched rules, null if the host was unreachable.
+     */
+    private void update(ParsedUrl url, Entry entry, RobotsRules rules) {
+        long now = System.nanoTime();
+        var applied = rules != null ? rules : RobotsRules.DISALLOW_ALL;
+        List<Waiting> decided;
+        synchronized (this) {
+            entry.rules = applied;
+            entry.expiresAt = now + (rules != null ? timeToLiveNanos : UNREACHABLE_TIME_TO_LIVE_NANOS);
+            entry.refreshing = false;
+            decided = entry.waiting;
+            entry.waiting = new ArrayList<>();
+        }
+        if(rules != null && hostScheduler != null)
+            hostScheduler.setMinimumDelay(url.url(), rules.crawlDelay().orElse(Duration.ZERO));
+        for(var w : decided) {
+            try {
+                var parsed = ParsedUrl.tryParse(w.url());
+                if(parsed != null && allows(applied, parsed)) w.admitted().accept(w.url());
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (this) {
+            return "RobotsCache[" + userAgent + ", " + entries.size() + " hosts, " + waiting.get() + " waiting]";
+        }
+    }
+
+    private static final class Entry {
+        private RobotsRules rules;
+        private long expiresAt;
+        private boolean refreshing;
+        private List<Waiting> waiting = new ArrayList<>();
+    }
+
+    private record Waiting(String url, Consumer<String> admitted) { }
+}
@@ -0,0 +1,214 @@
+package carlos.webscraper.fetch;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Rules of a robots.txt file which apply to one user agent, compiled into a prefix trie.<br/>
+ * Follows RFC 9309: the groups naming the user agent are merged, falling back to the groups of "*".
+ * The longest matching <code>Allow</code> or <code>Disallow</code> rule decides, <code>Allow</code> winning ties,
+ * and paths no rule matches are allowed. Rules may contain '*' wildcards and end with '$'.<br/>
+ * Checking a path walks the trie along the path once, following '*' edges only where the rules have them,
+ * so it takes time proportional to the path rather than to the amount of rules.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see RobotsCache
+ */
+public final class RobotsRules {
+    /**
+     * Rules allowing every path.
+     */
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(new Node(), null);
+    /**
+     * Rules disallowing every path.
+     */
+    public static final RobotsRules DISALLOW_ALL = compile(List.of(new Rule("/", false)), null);
+    private static final int NO_MATCH = 0;
+
+    private final Node root;
+    private final Duration crawlDelay;
+
+    private RobotsRules(Node root, Duration crawlDelay) {
+        this.root = root;
+        this.crawlDelay = crawlDelay;
+    }
+
+    /**
+     * Parses the rules of a robots.txt file which apply to the given user agent.
+     * @param robotsTxt content of the robots.txt file.
+     * @param userAgent user agent of the crawler, e.g. "mybot/1.0", whose product token is compared ignoring case.
+     *                  "*" selects only the groups which apply to every crawler.
+     * @return compiled rules.
+     */
+    public static RobotsRules parse(String robotsTxt, String userAgent) {
+        var agent = productToken(userAgent);
+        var ownRules = new ArrayList<Rule>();
+        var anyRules = new ArrayList<Rule>();
+        Duration ownDelay = null, anyDelay = null;
+        boolean own = false, any = false, ownFound = false, inAgents = false;
+        for(int start = 0, end; start < robotsTxt.length(); start = end + 1) {
+            end = lineEnd(robotsTxt, start);
+            int comment = robotsTxt.indexOf('#', start);
+            int lineEnd = comment >= 0 && comment < end ? comment : end;
+            int colon = robotsTxt.indexOf(':', start);
+            if(colon < 0 || colon >= lineEnd) continue;
+            var field = robotsTxt.substring(start, colon).trim().toLowerCase(Locale.ROOT);
+            var value = robotsTxt.substring(colon + 1, lineEnd).trim();
+            if(field.equals("user-agent")) {
+                if(!inAgents) own = any = false;
+                inAgents = true;
+                var token = productToken(value);
+                if(token.equals("*")) any = true;
+                else if(!agent.isEmpty() && token.equals(agent)) own = ownFound = true;
+                continue;
+            }
+            inAgents = false;
+            switch(field) {
+                case "allow", "disallow" -> {
+                    if(value.isEmpty()) continue;
+                    var rule = new Rule(value, field.equals("allow"));
+                    if(own) ownRules.add(rule);
+                    if(any) anyRules.add(rule);
+                }
+                case "crawl-delay" -> {
+                    var delay = parseDelay(value);
+                    if(own && delay != null) ownDelay = delay;
+                    if(any && delay != null) anyDelay = delay;
+                }
+                default -> { }
+            }
+        }
+        return ownFound ? compile(ownRules, ownDelay) : compile(anyRules, anyDelay);
+    }
+
+    private static RobotsRules compile(List<Rule> rules, Duration crawlDelay) {
+        var root = new Node();
+        for(var rule : rules)
+            root.insert(rule, 0);
+        return new RobotsRules(root, crawlDelay);
+    }
+
+    /**
+     * @return lowercase product token of the user agent, i.e. its leading letters, digits, '-' and '_', or "*".
+     */
+    private static String productToken(String userAgent) {
+        var agent = userAgent.trim();
+        if(agent.startsWith("*")) return "*";
+        int end = 0;
+        while(end < agent.length() && (Character.isLetterOrDigit(agent.charAt(end))
+                || agent.charAt(end) == '-' || agent.charAt(end) == '_'))
+            end++;
+        return agent.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+
+    private static int lineEnd(String s, int from) {
+        for(int i = from; i < s.length(); i++)
+            if(s.charAt(i) == '\n' || s.charAt(i) == '\r') return i;
+        return s.length();
+    }
+
+    private static Duration parseDelay(String value) {
+        try {
+            double seconds = Double.parseDouble(value);
+            if(!(seconds > 0) || seconds >= Long.MAX_VALUE / 1e9) return null;
+            return Duration.ofNanos((long) (seconds * 1e9));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param path path and query of a url, starting with '/'.
+     * @return true if the path may be crawled.
+     */
+    public boolean allows(CharSequence path) {
+        if(root.children == null && root.terminal == NO_MATCH) return true;
+        int best = root.match(path, 0, NO_MATCH);
+        return best == NO_MATCH || (best & 1) == 1;
+    }
+
+    /**
+     * @return the <code>Crawl-delay</code> of the selected group, if it has one.
+     */
+    public Optional<Duration> crawlDelay() {
+        return Optional.ofNullable(crawlDelay);
+    }
+
+    private record Rule(String pattern, boolean allow) { }
+
+    /**
+     * Trie node, a child keyed by '*' is a wildcard matching any run of characters.
+     * Matches are encoded as <code>length * 2 + (allow ? 1 : 0)</code> so that the largest code is the
+     * longest match, an allowing one on ties, and 0 is no match.
+     */
+    private static final class Node {
+        private static final char WILDCARD = '*';
+        private static final char END = '$';
+
+        private char[] keys;
+        private Node[] children;
+        private int terminal;
+        private int anchored;
+
+        void insert(Rule rule, int depth) {
+            var pattern = rule.pattern();
+            int code = pattern.length() * 2 + (rule.allow() ? 1 : 0);
+            if(depth == pattern.length()) {
+                terminal = Math.max(terminal, code);
+                return;
+            }
+            char c = pattern.charAt(depth);
+            if(c == END && depth == pattern.length() - 1) {
+                anchored = Math.max(anchored, code);
+                return;
+            }
+            if(c == WILDCARD && depth > 0 && pattern.charAt(depth - 1) == WILDCARD) {
+                insert(rule, depth + 1);
+                return;
+            }
+            child(c).insert(rule, depth + 1);
+        }
+
+        private Node child(char c) {
+            if(keys == null) {
+                keys = new char[] {c};
+                children = new Node[] {new Node()};
+                return children[0];
+            }
+            for(int i = 0; i < keys.length; i++)
+                if(keys[i] == c) return children[i];
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = c;
+            return children[children.length - 1] = new Node();
+        }
+
+        private Node get(char c) {
+            if(keys == null) return null;
+            for(int i = 0; i < keys.length; i++)
+                if(keys[i] == c) return children[i];
+            return null;
+        }
+
+        /**
+         * @return the best match code of the rules below this node matching path[from..], or best if none is better.
+         */
+        int match(CharSequence path, int from, int best) {
+            if(terminal > best) best = terminal;
+            if(anchored > best && from == path.length()) best = anchored;
+            var wildcard = get(WILDCARD);
+            if(wildcard != null)
+                for(int i = from; i <= path.length(); i++)
+                    best = wildcard.match(path, i, best);
+            if(from < path.length()) {
+                var next = get(path.charAt(from));
+                if(next != null) best = next.match(path, from + 1, best);
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package carlos.webscraper.fetch;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Blocking {@link Fetcher} built on {@link java.net.URLConnection}, one connection per request.<br/>
+ * Kept for servers which do not cooperate with {@link HttpClientFetcher}.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see Fetcher
+ */
+public final class URLConnectionFetcher implements Fetcher {
+    private final int timeoutMillis;
+
+    /**
+     * Creates a new {@link URLConnectionFetcher} with a 5 second connect and read timeout.
+     */
+    public URLConnectionFetcher() {
+        this(Duration.ofSeconds(5));
+    }
+
+    /**
+     * Creates a new {@link URLConnectionFetcher}.
+     * @param timeout connect and read timeout of each request.
+     * @throws IllegalArgumentException if the timeout is not positive.
+     */
+    public URLConnectionFetcher(Duration timeout) throws IllegalArgumentException {
+        if(timeout.isNegative() || timeout.isZero())
+            throw new IllegalArgumentException("timeout must be positive!");
+        this.timeoutMillis = (int) Math.min(timeout.toMillis(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Page fetch(String url) throws IOException {
+        return fetch(url, null);
+    }
+
+    /**
+     * Checks the <code>Content-Language</code> header before reading the body, and the start of the body
+     * while reading it, closing the connection as soon as the page is rejected.
+     */
+    @Override
+    public Page fetch(String url, LanguageFilter languages) throws IOException {
+        return fetch(url, languages, Validators.NONE);
+    }
+
+    /**
+     * Sends the validators as <code>If-None-Match</code> and <code>If-Modified-Since</code> headers,
+     * a <code>304 Not Modified</code> answer has no body to download.
+     */
+    @Override
+    public Page fetch(String url, LanguageFilter languages, Validators validators) throws IOException {
+        try {
+            var connection = new URI(url).toURL().openConnection();
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            boolean conditional = validators != null && !validators.isEmpty();
+            if(conditional && validators.etag() != null)
+                connection.setRequestProperty("If-None-Match", validators.etag());
+            if(conditional && validators.lastModified() != null)
+                connection.setRequestProperty("If-Modified-Since", validators.ifModifiedSince());
+            if(conditional && connection instanceof HttpURLConnection http
+                    && http.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                http.disconnect();
+                return Page.notModified(url, validators);
+            }
+            if(connection instanceof HttpURLConnection http && http.getResponseCode() >= 400)
+                throw new HttpStatusException(url, http.getResponseCode(), http.getHeaderField("Retry-After"));
+            if(languages != null && languages.checkHeader(url, connection.getHeaderField("Content-Language")))
+                languages = null;
+            try (var in = connection.getInputStream()) {
+                return PageReader.read(url, in, connection.getContentType(), languages)
+                        .withUrl(connection.getURL().toString())
+                        .withValidators(Validators.of(connection.getHeaderField("ETag"),
+                                connection.getHeaderField("Last-Modified")));
+            }
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Fetches the page on the calling {@link Thread}, the returned future is already completed.
+     */
+    @Override
+    public CompletableFuture<Page> fetchAsync(String url) {
+        return fetchAsync(url, null);
+    }
+
+    /**
+     * Fetches the page on the calling {@link Thread}, the returned future is already completed.
+     */
+    @Override
+    public CompletableFuture<Page> fetchAsync(String url, LanguageFilter languages) {
+        return fetchAsync(url, languages, Validators.NONE);
+    }
+
+    /**
+     * Fetches the page on the calling {@link Thread}, the returned future is already completed.
+     */
+    @Override
+    public CompletableFuture<Page> fetchAsync(String url, LanguageFilter languages, Validators validators) {
+        try {
+            return CompletableFuture.completedFuture(fetch(url, languages, validators));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package carlos.webscraper.fetch;
+
+import carlos.utilities.Fingerprint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * On-disk store of the {@link Validators} of every page a crawl has downloaded, kept between crawls,
+ * so a recrawl can ask the server whether a page changed instead of downloading it again.<br/>
+ * The store is an append-only log of records:
+ * <pre>
+ * fingerprint      (8 bytes, {@link Fingerprint} of the url)
+ * lastModified     (8 bytes, epoch milliseconds, {@link Long#MIN_VALUE} if unknown)
+ * etagLength       (2 bytes)
+ * urlLength        (2 bytes)
+ * etag             (etagLength bytes of UTF-8)
+ * url              (urlLength bytes of UTF-8)
+ * </pre>
+ * The log is memory-mapped, and an in-memory open-addressing table maps url fingerprints to the offset
+ * of their latest record, 16 bytes per url. Records are only appended when the validators of a url change.
+ * Records appended since the log was last mapped are served from memory, and the log is mapped again once
+ * {@link ValidatorStore#MAX_UNMAPPED_RECORDS} of them have piled up.
+ * A record cut short by a crash is dropped when the store is opened, and a log holding more superseded
+ * records than live ones is compacted.<br/>
+ * Urls are stored along with their validators, so a recrawl can queue every page of the previous crawl,
+ * even those only linked from pages which were not modified.
+ * The log is limited to 2 GB, as it is mapped with a single mapping.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see Validators
+ * @see carlos.webscraper.WebScraperBuilder#withRecrawlStore(Path)
+ */
+public final class ValidatorStore implements AutoCloseable {
+    private static final int MAGIC = 0x56414C31;
+    private static final int HEADER_LENGTH = 4;
+    private static final int FIXED_LENGTH = 8 + 8 + 2 + 2;
+    private static final int MAX_FIELD_LENGTH = 0xFFFF;
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final long MAX_LENGTH = Integer.MAX_VALUE;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final int MAX_UNMAPPED_RECORDS = 4096;
+
+    private final Path path;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private long length;
+    private long[] fingerprints = new long[INITIAL_CAPACITY];
+    private long[] offsets = new long[INITIAL_CAPACITY];
+    private int size;
+    private long superseded;
+    private final Map<String, Validators> unmapped = new HashMap<>();
+
+    private ValidatorStore(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Opens the store at the given path, creating it if it does not exist.
+     * @param path path of the log file.
+     * @return opened store.
+     * @throws IOException if the file cannot be read, or is not a validator store.
+     */
+    public static ValidatorStore open(Path path) throws IOException {
+        var store = new ValidatorStore(path);
+        store.load();
+        if(store.superseded > store.size) store.compact();
+        return store;
+    }
+
+    private void load() throws IOException {
+        var parent = path.toAbsolutePath().getParent();
+        if(parent != null) Files.createDirectories(parent);
+        channel = FileChannel.open(path, CREATE, READ, WRITE);
+        if(channel.size() < HEADER_LENGTH) {
+            channel.truncate(0);
+            channel.write(ByteBuffer.allocate(HEADER_LENGTH).putInt(0, MAGIC), 0);
+        }
+        length = channel.size();
+        remap();
+        if(mapped.getInt(0) != MAGIC) {
+            channel.close();
+            throw new IOException(path + " is not a validator store.");
+        }
+        long offset = HEADER_LENGTH;
+        while(offset + FIXED_LENGTH <= length) {
+            long end = offset + FIXED_LENGTH + (mapped.getShort((int) offset + 16) & 0xFFFF)
+                    + (mapped.getShort((int) offset + 18) & 0xFFFF);
+            if(end > length) break;
+            index(mapped.getLong((int) offset), offset);
+            offset = end;
+        }
+        if(offset < length) {
+            channel.truncate(offset);
+            length = offset;
+            remap();
+        }
+    }
+
+    private void remap() throws IOException {
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        unmapped.clear();
+    }
+
+    /**
+     * @param url url of a page.
+     * @return the validators last stored for the url, {@link Validators#NONE} if there are none.
+     * @throws IOException if the store cannot be read.
+     */
+    public synchronized Validators get(String url) throws IOException {
+        long offset = offsetOf(Fingerprint.of(url));
+        if(offset < 0) return Validators.NONE;
+        if(offset >= mapped.capacity()) return unmapped.getOrDefault(url, Validators.NONE);
+        if(!url.equals(url(offset))) return Validators.NONE;
+        int etagLength = mapped.getShort((int) offset + 16) & 0xFFFF;
+        long lastModified = mapped.getLong((int) offset + 8);
+        var etag = etagLength == 0 ? null : string(offset + FIXED_LENGTH, etagLength);
+        return new Validators(etag, lastModified == NO_DATE ? null : Instant.ofEpochMilli(lastModified));
+    }
+
+    /**
+     * Stores the validators of the url, unless they equal the ones already stored.
+     * @param url url of a page.
+     * @param validators validators received with the page.
+     * @throws IOException if the store cannot be written to, or would exceed its maximum length.
+     * @throws NullPointerException if the url or the validators are null.
+     */
+    public synchronized void put(String url, Validators validators) throws IOException, NullPointerException {
+        Objects.requireNonNull(validators);
+        var urlBytes = url.getBytes(StandardCharsets.UTF_8);
+        var etagBytes = validators.etag() == null ? new byte[0] : validators.etag().getBytes(StandardCharsets.UTF_8);
+        if(urlBytes.length > MAX_FIELD_LENGTH || etagBytes.length > MAX_FIELD_LENGTH) return;
+        long fingerprint = Fingerprint.of(url);
+        if(offsetOf(fingerprint) >= 0 && validators.equals(get(url))) return;
+        int recordLength = FIXED_LENGTH + etagBytes.length + urlBytes.length;
+        if(length + recordLength > MAX_LENGTH) throw new IOException(path + " reached its maximum length.");
+        var record = ByteBuffer.allocate(recordLength)
+                .putLong(fingerprint)
+                .putLong(validators.lastModified() == null ? NO_DATE : validators.lastModified().toEpochMilli())
+                .putShort((short) etagBytes.length)
+                .putShort((short) urlBytes.length)
+                .put(etagBytes)
+                .put(urlBytes)
+                .flip();
+        long offset = length;
+        while(record.hasRemaining())
+            channel.write(record, offset + record.position());
+        length += recordLength;
+        index(fingerprint, offset);
+        unmapped.put(url, validators);
+        if(unmapped.size() >= MAX_UNMAPPED_RECORDS) remap();
+    }
+
+    /**
+     * Passes every stored url to the consumer, in the order their latest validators were stored.
+     * @param consumer consumer of the urls.
+     * @throws IOException if the store cannot be read.
+     */
+    public void forEachUrl(Consumer<String> consumer) throws IOException {
+        long[] live;
+        synchronized (this) {
+            if(mapped.capacity() < length) remap();
+            live = liveOffsets();
+        }
+        for(var offset : live) {
+            String url;
+            synchronized (this) {
+                url = url(offset);
+            }
+            consumer.accept(url);
+        }
+    }
+
+    /**
+     * @return amount of urls in this store.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return length of the log file, in bytes.
+     */
+    public synchronized long diskFootprint() {
+        return length;
+    }
+
+    /**
+     * Forces the log to the storage device and closes it.
+     * @throws IOException if the log cannot be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(!channel.isOpen()) return;
+        channel.force(false);
+        channel.close();
+    }
+
+    /**
+     * Rewrites the log with only the latest record of each url.
+     */
+    private void compact() throws IOException {
+        var compacted = path.resolveSibling(path.getFileName() + ".compacting");
+        try (var out = FileChannel.open(compacted, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            out.write(ByteBuffer.allocate(HEADER_LENGTH).putInt(0, MAGIC));
+            for(var offset : liveOffsets()) {
+                int recordLength = FIXED_LENGTH + (mapped.getShort((int) offset + 16) & 0xFFFF)
+                        + (mapped.getShort((int) offset + 18) & 0xFFFF);
+                var record = mapped.slice((int) offset, recordLength);
+                while(record.hasRemaining())
+                    out.write(record);
+            }
+            out.force(false);
+        }
+        channel.close();
+        Files.move(compacted, path, REPLACE_EXISTING, ATOMIC_MOVE);
+        Arrays.fill(fingerprints, 0);
+        size = 0;
+        superseded = 0;
+        load();
+    }
+
+    private long[] liveOffsets() {
+        var live = new long[size];
+        int n = 0;
+        for(int i = 0; i < fingerprints.length; i++)
+            if(fingerprints[i] != 0) live[n++] = offsets[i];
+        Arrays.sort(live);
+        return live;
+    }
+
+    private String url(long offset) {
+        int etagLength = mapped.getShort((int) offset + 16) & 0xFFFF;
+        int urlLength = mapped.getShort((int) offset + 18) & 0xFFFF;
+        if(offset + FIXED_LENGTH + etagLength + urlLength > mapped.capacity()) return null;
+        return string(offset + FIXED_LENGTH + etagLength, urlLength);
+    }
+
+    private String string(long offset, int length) {
+        var bytes = new byte[length];
+        mapped.get((int) offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long offsetOf(long fingerprint) {
+        int mask = fingerprints.length - 1;
+        for(int i = (int) Fingerprint.mix(fingerprint) & mask; fingerprints[i] != 0; i = (i + 1) & mask)
+            if(fingerprints[i] == fingerprint) return offsets[i];
+        return -1;
+    }
+
+    private void index(long fingerprint, long offset) {
+        int mask = fingerprints.length - 1;
+        int i = (int) Fingerprint.mix(fingerprint) & mask;
+        for(; fingerprints[i] != 0; i = (i + 1) & mask) {
+            if(fingerprints[i] == fingerprint) {
+                offsets[i] = offset;
+                superseded++;
+                return;
+            }
+        }
+        fingerprints[i] = fingerprint;
+        offsets[i] = offset;
+        if(++size * 3 > fingerprints.length * 2) grow();
+    }
+
+    private void grow() {
+        var oldFingerprints = fingerprints;
+        var oldOffsets = offsets;
+        fingerprints = new long[oldFingerprints.length << 1];
+        offsets = new long[oldOffsets.length << 1];
+        int mask = fingerprints.length - 1;
+        for(int j = 0; j < oldFingerprints.length; j++) {
+            if(oldFingerprints[j] == 0) continue;
+            int i = (int) Fingerprint.mix(oldFingerprints[j]) & mask;
+            while(fingerprints[i] != 0)
+                i = (i + 1) & mask;
+            fingerprints[i] = oldFingerprints[j];
+            offsets[i] = oldOffsets[j];
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ValidatorStore[" + path + ", " + size + " urls, " + length + " bytes]";
+    }
+}
@@ -0,0 +1,58 @@
+package carlos.webscraper.fetch;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Cache validators of a downloaded page, sent back on the next request for the page so the server
+ * can answer <code>304 Not Modified</code> instead of the whole page.
+ * @param etag value of the <code>ETag</code> header, null if there was none.
+ * @param lastModified value of the <code>Last-Modified</code> header, null if there was none or it was not a valid date.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see ValidatorStore
+ * @see Fetcher#fetchAsync(String, LanguageFilter, Validators)
+ */
+public record Validators(String etag, Instant lastModified) {
+    /**
+     * No validators, requests are sent unconditionally.
+     */
+    public static final Validators NONE = new Validators(null, null);
+
+    /**
+     * @param etag value of the <code>ETag</code> header, may be null.
+     * @param lastModified value of the <code>Last-Modified</code> header, may be null.
+     * @return validators of the headers, {@link Validators#NONE} if there are none.
+     */
+    public static Validators of(String etag, String lastModified) {
+        var date = parseDate(lastModified);
+        if(etag != null && etag.isBlank()) etag = null;
+        return etag == null && date == null ? NONE : new Validators(etag, date);
+    }
+
+    private static Instant parseDate(String date) {
+        if(date == null) return null;
+        try {
+            return Instant.from(DateTimeFormatter.RFC_1123_DATE_TIME.parse(date.trim()));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true if there are no validators.
+     */
+    public boolean isEmpty() {
+        return etag == null && lastModified == null;
+    }
+
+    /**
+     * @return value of the <code>If-Modified-Since</code> header, null if the last modification date is not known.
+     */
+    public String ifModifiedSince() {
+        return lastModified == null ? null
+                : DateTimeFormatter.RFC_1123_DATE_TIME.format(lastModified.atOffset(ZoneOffset.UTC));
+    }
+}
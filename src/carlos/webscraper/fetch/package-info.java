@@ -0,0 +1,6 @@
+/**
+ * Downloading of pages for a {@link carlos.webscraper.WebScraper}: {@link carlos.webscraper.fetch.Fetcher}
+ * implementations, per-host politeness ({@link carlos.webscraper.fetch.HostScheduler},
+ * {@link carlos.webscraper.fetch.RobotsCache}) and recrawl validators ({@link carlos.webscraper.fetch.ValidatorStore}).
+ */
+package carlos.webscraper.fetch;
@@ -1,29 +1,41 @@
 package carlos.webscraper.parser;
+import carlos.utilities.BlockCompression;
+import carlos.utilities.Fingerprint;
+import carlos.utilities.FingerprintIndex;
+import carlos.utilities.RecordFile;
+import carlos.utilities.WriteBehindQueue;
 import carlos.webscraper.WebScraper;
 
-import java.io.IOException;
 import java.io.Serial;
+import java.io.Serializable;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.Objects;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.MatchResult;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import static java.lang.Thread.currentThread;
 import static java.nio.file.Files.exists;
-import static java.nio.file.Files.newBufferedWriter;
-import static java.util.Collections.newSetFromMap;
 
 /**
  * HTML parsing class for use with {@link WebScraper}.
- * Custom implementations allow for niche data to be gathered.
+ * Custom implementations allow for niche data to be gathered.<br/>
+ * Pages are matched without holding any lock. Parsed elements are added to the {@link HTMLParser#cache}
+ * under one of {@link HTMLParser#STRIPES} locks chosen by thread, so threads only contend on the same stripe,
+ * and {@link HTMLParser#collected} is reserved by compare-and-set, so {@link LimitedParser#limit()} is never exceeded.<br/>
+ * Elements are deduplicated for the whole lifetime of the parser by their {@link Fingerprint} in a {@link FingerprintIndex},
+ * the {@link HTMLParser#cache} is only a write buffer of elements not yet flushed, kept if saving is enabled.
  * @author Carlos Milkovic
  * @version a0.9
  * @see WebScraper
@@ -32,15 +44,23 @@ public abstract class HTMLParser implements LimitedParser {
 
     @Serial
     private static final long serialVersionUID = -2044228837718462802L;
-    public static final int CACHE_LIMIT = 1_000_000;
+    public static final int CACHE_LIMIT = 1 << 16;
+    protected static final long MAX_BLOOM_SIZE = 100_000_000;
+    private static final int STRIPES = 16;
+    private static final WriteBehindQueue WRITER = new WriteBehindQueue("HTMLParser-writer");
 
     public final LocalDateTime timeOfCreation = LocalDateTime.now();
     public final String NAME;
     public final Pattern PATTERN;
 
     protected AtomicInteger collected = new AtomicInteger(0);
-    protected final Set<String> cache = newSetFromMap(new ConcurrentHashMap<>(CACHE_LIMIT));
+    protected volatile Map<String, Source> cache = newCache();
     protected boolean shouldSave;
+    private BlockCompression compression;
+    private boolean recordOutput;
+    private final ReentrantLock[] stripes = newStripes();
+    private transient Object transformKey;
+    private transient volatile FingerprintIndex seen;
 
     /**
      * Creates a new {@link HTMLParser} with this name.
@@ -54,38 +74,92 @@ public abstract class HTMLParser implements LimitedParser {
 
     public abstract String pattern();
 
+    /**
+     * Where and when cached elements were parsed, shared by all elements parsed from the same page.
+     * @param urlId {@link Fingerprint} of the url of the page, 0 if unknown.
+     * @param timestamp milliseconds since the epoch at which the elements were cached.
+     */
+    protected record Source(long urlId, long timestamp) implements Serializable {}
+
     public String toString() {
         return getClass().getName() + NAME;
     }
 
     /**
      * Returns the {@link Path} to which this {@link HTMLParser} data has been saved.
-     *
+     * Ends with {@link RecordFile#EXTENSION} if the output is saved as {@link HTMLParser#recordOutput() records},
+     * or with {@link BlockCompression#EXTENSION} if it is {@link HTMLParser#compressOutput(BlockCompression) compressed}.
      * @return {@link Path} to file.
      */
     public Path pathToContent() {
-        return Paths.get(getDateTime() + "@" + NAME + ".txt");
+        var name = getDateTime() + "@" + NAME;
+        if(recordOutput) return Paths.get(name + RecordFile.EXTENSION);
+        return Paths.get(name + ".txt" + (compression != null ? BlockCompression.EXTENSION : ""));
     }
 
     /**
      * Saves the content stored in the cache.
-     * Reason for the method being static is to stop multiple threads
-     * writing the same data when multiple {@link WebScraper}s are collectively using this {@link HTMLParser}.<br/>
-     * The path to saved content is {@link HTMLParser#pathToContent()}
+     * The cache is swapped for an empty one while holding every stripe, in O(1), and the full one
+     * is appended to the given {@link Path} by a background writer shared by all {@link HTMLParser}s,
+     * so no scraping thread waits for the disk.
+     * Use {@link HTMLParser#awaitFlushes()} to wait until the content is on the storage device.
+     * If the output is compressed or saved as records, encoding also runs on the background writer.
+     * Reason for the method being synchronized is that caches are queued in the order they were swapped.
+     * @param p path the content is appended to, usually {@link HTMLParser#pathToContent()}.
      * @see WebScraper
+     * @see WriteBehindQueue
      */
     public final synchronized void flush(Path p) {
-        if(shouldSave && !cache.isEmpty()) {
-            try (var w = newBufferedWriter(pathToContent(), openOption(p))) {
-                for (var token : cache) {
-                    w.write(token);
-                    w.newLine();
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        var tokens = swapCache();
+        if(shouldSave && !tokens.isEmpty()) {
+            if(recordOutput) WRITER.submit(() -> RecordFile.append(p, toRecords(tokens)));
+            else if(compression != null) WRITER.append(p, tokens.keySet(), compression);
+            else WRITER.append(p, tokens.keySet());
         }
-        cache.clear();
+    }
+
+    private List<RecordFile.Record> toRecords(Map<String, Source> tokens) {
+        var records = new ArrayList<RecordFile.Record>(tokens.size());
+        tokens.forEach((element, source) ->
+                records.add(new RecordFile.Record(element, source.urlId(), source.timestamp(), NAME)));
+        return records;
+    }
+
+    /**
+     * Waits until the content of every {@link HTMLParser#flush(Path)} called so far,
+     * by any {@link HTMLParser}, has been written to the storage device.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public static void awaitFlushes() throws InterruptedException {
+        try {
+            WRITER.barrier().get();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return amount of flushes queued for, or being written by, the background writer.
+     */
+    public static int pendingFlushes() {
+        return WRITER.depth();
+    }
+
+    private Map<String, Source> swapCache() {
+        for(var stripe : stripes)
+            stripe.lock();
+        try {
+            var full = cache;
+            cache = newCache();
+            return full;
+        } finally {
+            for(var stripe : stripes)
+                stripe.unlock();
+        }
+    }
+
+    private static Map<String, Source> newCache() {
+        return new ConcurrentHashMap<>(CACHE_LIMIT);
     }
 
     /**
@@ -98,28 +172,139 @@ public abstract class HTMLParser implements LimitedParser {
 
     /**
      * Adds parsed elements from the given raw HTML {@link String} to this {@link HTMLParser}'s {@link HTMLParser#cache}.
+     * The HTML is parsed without holding any lock.
      * @param html raw html source {@link String}.
-     * @return change in size of the {@link HTMLParser#cache}.
+     * @return amount of elements added to the {@link HTMLParser#cache}.
+     */
+    public final int addContentFrom(String html) {
+        if(!reachedLimit())
+            return addData(getContent(html), 0);
+        return 0;
+    }
+
+    /**
+     * Adds elements already parsed from a page, e.g. by a {@link MultiParserMatcher}, to this {@link HTMLParser}'s {@link HTMLParser#cache}.
+     * @param parsedElements elements parsed with this {@link HTMLParser}'s pattern and filter.
+     * @param url url of the page the elements were parsed from, recorded as a {@link Fingerprint}.
+     * @return amount of elements added to the {@link HTMLParser#cache}.
+     * @see MultiParserMatcher
      */
-    public final synchronized int addContentFrom(String html) {
+    public final int addMatchedContent(Set<String> parsedElements, String url) {
         if(!reachedLimit())
-            return addData(getContent(html));
+            return addData(parsedElements, Fingerprint.of(url));
         return 0;
     }
 
     /**
-     * Adds data provided to the parsers internal cache.
+     * Adds data provided to the parsers internal cache, under the stripe of the current thread.
+     * Each element not seen before reserves a slot in {@link HTMLParser#collected}, once none are left the rest are dropped.
+     * Elements are only buffered in the {@link HTMLParser#cache} if saving is enabled.
+     * The timestamp is taken under the stripe, so every element of a swapped cache is older than those of the next one.
      * @param parsedElements elements to be added.
-     * @return the change in size of the cache used to monitor {@link WebScraper} individual contributions.
+     * @param urlId {@link Fingerprint} of the url the elements were parsed from, 0 if unknown.
+     * @return the amount of elements added, used to monitor {@link WebScraper} individual contributions.
      * @see WebScraper
      */
-    private synchronized int addData(Set<String> parsedElements) {
-        int previousSize = cache.size();
-        addNewData(parsedElements);
-        int difference = cache.size() - previousSize;
-        collected.addAndGet(difference);
+    private int addData(Set<String> parsedElements, long urlId) {
+        int added = 0;
+        var seen = seen();
+        var stripe = stripe();
+        stripe.lock();
+        try {
+            var source = new Source(urlId, System.currentTimeMillis());
+            for(var e : parsedElements) {
+                if(!seen.add(Fingerprint.of(e))) continue;
+                if(!reserve()) break;
+                if(shouldSave) cache.put(e, source);
+                added++;
+            }
+        } finally {
+            stripe.unlock();
+        }
         if(cacheOverflowing()) flush(pathToContent());
-        return difference;
+        return added;
+    }
+
+    /**
+     * Adds the element to the {@link HTMLParser#cache} under the stripe of the current thread,
+     * so it cannot be lost by a concurrent {@link HTMLParser#flush(Path)}.
+     * Does not count towards {@link HTMLParser#collected}.
+     * @param element element to be cached.
+     * @param urlId {@link Fingerprint} of the url the element belongs to, 0 if unknown.
+     */
+    protected final void addToCache(String element, long urlId) {
+        var stripe = stripe();
+        stripe.lock();
+        try {
+            cache.putIfAbsent(element, new Source(urlId, System.currentTimeMillis()));
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Fingerprints of every element collected by this {@link HTMLParser}, created on first use so that
+     * parsers which never collect elements, e.g. {@link carlos.webscraper.parser.link.LinkParser}, do not allocate it.
+     * Elements stay in memory up to {@link LimitedParser#limit()}, at most
+     * {@link FingerprintIndex#DEFAULT_SPILL_THRESHOLD}, so a parser only pays for the elements it collects.
+     * Past that they spill to disk and a {@link carlos.utilities.BloomFilter} sized for the limit,
+     * up to {@link HTMLParser#MAX_BLOOM_SIZE}, is allocated.
+     */
+    private FingerprintIndex seen() {
+        var index = seen;
+        if(index == null) {
+            synchronized(stripes) {
+                if((index = seen) == null) {
+                    long expected = Math.min(Math.max(limit(), 1), MAX_BLOOM_SIZE);
+                    seen = index = new FingerprintIndex(pathToSeenIndex(), expected,
+                            Math.min(expected, FingerprintIndex.DEFAULT_SPILL_THRESHOLD));
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return {@link Path} to the directory the seen index creates its own run directory in,
+     * indexes created at the same time may share it.
+     * @see FingerprintIndex
+     */
+    public final Path pathToSeenIndex() {
+        return Paths.get("$seen-index$" + getDateTime() + "@" + NAME);
+    }
+
+    /**
+     * @return memory used to remember collected elements, in bytes.
+     * @see FingerprintIndex
+     */
+    public final long seenMemoryFootprint() {
+        var index = seen;
+        return index != null ? index.memoryFootprint() : 0;
+    }
+
+    /**
+     * Reserves one slot of the {@link LimitedParser#limit()}.
+     * @return false if the limit has been reached.
+     */
+    private boolean reserve() {
+        long limit = limit();
+        int current;
+        do {
+            current = collected.get();
+            if(current >= limit) return false;
+        } while(!collected.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private ReentrantLock stripe() {
+        return stripes[(int) (currentThread().threadId() & (STRIPES - 1))];
+    }
+
+    private static ReentrantLock[] newStripes() {
+        var stripes = new ReentrantLock[STRIPES];
+        for(int i = 0; i < STRIPES; i++)
+            stripes[i] = new ReentrantLock();
+        return stripes;
     }
 
     /**
@@ -149,14 +334,6 @@ public abstract class HTMLParser implements LimitedParser {
         return cache.size();
     }
 
-    private void addNewData(Set<String> parsedElements) {
-        for(var e : parsedElements){
-            if(dataWithinLimit())
-                cache.add(e);
-            else break;
-        }
-    }
-
     /**
      *
      * @return the total amount of parsed elements collected.
@@ -197,13 +374,67 @@ public abstract class HTMLParser implements LimitedParser {
      * @return a {@link Set} of parsed elements.
      */
     public final Set<String> getContent(String html) {
-        return getPATTERN().matcher(transform(html)).results()
-                .map(MatchResult::group)
-                .filter(this::onAddFilter)
-                .collect(Collectors.toSet());
+        return matchContent(transform(html));
+    }
+
+    /**
+     * Retrieves Parsed elements from HTML which has already been {@link Parser#transform(String) transformed},
+     * matching it in place.
+     * @param transformed transformed HTML.
+     * @return a {@link Set} of parsed elements.
+     */
+    final Set<String> matchContent(CharSequence transformed) {
+        var elements = new HashSet<String>();
+        var m = getPATTERN().matcher(transformed);
+        while(m.find()) {
+            var element = m.group();
+            if(onAddFilter(element)) elements.add(element);
+        }
+        return elements;
+    }
+
+    /**
+     * Identifies the {@link Parser#transform(String)} of this {@link HTMLParser}, parsers with equal keys
+     * produce the same transformed text and may share it.
+     * @return {@link Parser} if neither transform is overridden, otherwise this {@link HTMLParser}.
+     * @see MultiParserMatcher
+     */
+    Object transformKey() {
+        if(transformKey == null) {
+            try {
+                boolean overridden = getClass().getMethod("transform", String.class).getDeclaringClass() != Parser.class
+                        || getClass().getMethod("transform", CharSequence.class, StringBuilder.class).getDeclaringClass() != Parser.class;
+                transformKey = overridden ? this : Parser.class;
+            } catch (NoSuchMethodException e) {
+                transformKey = this;
+            }
+        }
+        return transformKey;
     }
 
     public void enableSaving() {
         shouldSave = true;
     }
+
+    /**
+     * Makes this {@link HTMLParser} save its content as block-compressed GZIP instead of plain text.
+     * Saved content can be read back with {@link BlockCompression#newReader(Path)}.
+     * @param compression block size and compression level to be used.
+     * @throws NullPointerException if compression is null.
+     * @see BlockCompression
+     */
+    public void compressOutput(BlockCompression compression) throws NullPointerException {
+        this.compression = Objects.requireNonNull(compression);
+    }
+
+    /**
+     * Makes this {@link HTMLParser} save its content as indexed binary records instead of text,
+     * each holding the element, the url it was parsed from, when it was parsed and the name of this parser.
+     * Takes precedence over {@link HTMLParser#compressOutput(BlockCompression)}.
+     * Saved content can be read back with {@link RecordFile#open(Path)}.
+     * @see RecordFile
+     */
+    public void recordOutput() {
+        recordOutput = true;
+    }
 }
@@ -0,0 +1,158 @@
+package carlos.webscraper.parser;
+
+import carlos.webscraper.parser.link.LinkParser;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * Matches several {@link HTMLParser}s against a page while doing the shared work only once.<br/>
+ * <ul>
+ *     <li>Parsers with the same {@link Parser#transform(String)} (parsers which do not override it,
+ *     or parsers created from the same {@link StandardParser}) share a single transformed text.</li>
+ *     <li>Parsers with the same {@link Parser#pattern()} on the same text share a single regex scan,
+ *     each parser then applies its own {@link Parser#onAddFilter(String)} to the matches.</li>
+ * </ul>
+ * Parsers with distinct patterns are still scanned separately: a combined alternation
+ * finds the same matches more slowly with {@link java.util.regex}, as every position has to be tested
+ * against every alternative and overlapping matches have to be recovered.<br/>
+ * A {@link MultiParserMatcher#parallel() parallel} matcher runs the transforms and scans of a page
+ * as separate tasks on a {@link ForkJoinPool} sized to the amount of cores, and joins them before returning.<br/>
+ * Texts are transformed with {@link Parser#transform(CharSequence, StringBuilder)} into pooled buffers
+ * and matched in place, so a page costs no copies beyond the parsed elements.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see HTMLParser
+ */
+public final class MultiParserMatcher {
+    private static final MultiParserMatcher SEQUENTIAL = new MultiParserMatcher(null);
+    private static final int MAX_POOLED_BUFFERS = 64;
+    private static final int MAX_POOLED_CAPACITY = 4 * 1024 * 1024;
+    private static final Queue<StringBuilder> BUFFERS = new ConcurrentLinkedQueue<>();
+    private static MultiParserMatcher parallel;
+
+    private final ForkJoinPool pool;
+
+    private MultiParserMatcher(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @return a {@link MultiParserMatcher} which matches on the calling thread.
+     */
+    public static MultiParserMatcher sequential() {
+        return SEQUENTIAL;
+    }
+
+    /**
+     * Retrieves the {@link MultiParserMatcher} which matches on a {@link ForkJoinPool} shared by all scrapers.
+     * The pool is created on the first call and has one daemon thread per available core,
+     * so CPU-bound parsing never competes with threads blocked on the network.
+     * @return a parallel {@link MultiParserMatcher}.
+     */
+    public static synchronized MultiParserMatcher parallel() {
+        if(parallel == null)
+            parallel = new MultiParserMatcher(new ForkJoinPool(Runtime.getRuntime().availableProcessors()));
+        return parallel;
+    }
+
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Matches all given parsers against the page.
+     * Results are filtered with each parser's {@link Parser#onAddFilter(String)}.
+     * {@link LinkParser}s which {@link LinkParser#scansLinks() scan links} extract them with their own scan
+     * of the raw HTML, resolving relative links against the url.
+     * @param url url of the page.
+     * @param html raw HTML of the page.
+     * @param parsers parsers to be matched.
+     * @return parsed elements of each parser.
+     */
+    public Map<HTMLParser, Set<String>> match(String url, CharSequence html, Collection<HTMLParser> parsers) {
+        var scanners = new ArrayList<LinkParser>(1);
+        var matched = new ArrayList<HTMLParser>(parsers.size());
+        for(var parser : parsers) {
+            if(parser instanceof LinkParser linkParser && linkParser.scansLinks()) scanners.add(linkParser);
+            else matched.add(parser);
+        }
+        var byTransform = groupBy(matched, HTMLParser::transformKey);
+        if(!isParallel() || parsers.size() < 2) {
+            var results = new HashMap<HTMLParser, Set<String>>();
+            for(var linkParser : scanners)
+                results.put(linkParser, linkParser.getLinks(html, url));
+            for(var group : byTransform)
+                transformAndMatch(html, group, results);
+            return results;
+        }
+        var results = new ConcurrentHashMap<HTMLParser, Set<String>>();
+        var tasks = new ArrayList<ForkJoinTask<?>>(scanners.size() + byTransform.size());
+        for(var linkParser : scanners)
+            tasks.add(ForkJoinTask.adapt(() -> { results.put(linkParser, linkParser.getLinks(html, url)); }));
+        for(var group : byTransform)
+            tasks.add(ForkJoinTask.adapt(() -> transformAndMatch(html, group, results)));
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        return results;
+    }
+
+    /**
+     * Transforms the page into a pooled buffer, matches the group against it and returns the buffer to the pool.
+     * Pooled rather than thread-local, as a worker may run other transforms while it waits for its own tasks.
+     */
+    private void transformAndMatch(CharSequence html, List<HTMLParser> group, Map<HTMLParser, Set<String>> results) {
+        var buffer = BUFFERS.poll();
+        if(buffer == null) buffer = new StringBuilder(html.length());
+        try {
+            matchTransformed(group.get(0).transform(html, buffer), group, results);
+        } finally {
+            release(buffer);
+        }
+    }
+
+    private static void release(StringBuilder buffer) {
+        if(buffer.capacity() > MAX_POOLED_CAPACITY || BUFFERS.size() >= MAX_POOLED_BUFFERS) return;
+        buffer.setLength(0);
+        BUFFERS.offer(buffer);
+    }
+
+    private void matchTransformed(CharSequence text, List<HTMLParser> group, Map<HTMLParser, Set<String>> results) {
+        var byPattern = groupBy(group, parser -> parser.PATTERN.pattern());
+        if(!isParallel() || byPattern.size() < 2) {
+            for(var sharing : byPattern)
+                matchPattern(text, sharing, results);
+            return;
+        }
+        ForkJoinTask.invokeAll(byPattern.stream()
+                .map(sharing -> ForkJoinTask.adapt(() -> matchPattern(text, sharing, results)))
+                .toList());
+    }
+
+    private void matchPattern(CharSequence text, List<HTMLParser> sharing, Map<HTMLParser, Set<String>> results) {
+        if(sharing.size() == 1) {
+            results.put(sharing.get(0), sharing.get(0).matchContent(text));
+            return;
+        }
+        var matches = new ArrayList<String>();
+        var m = sharing.get(0).PATTERN.matcher(text);
+        while(m.find())
+            matches.add(m.group());
+        for(var parser : sharing) {
+            var set = new HashSet<String>();
+            for(var match : matches)
+                if(parser.onAddFilter(match)) set.add(match);
+            results.put(parser, set);
+        }
+    }
+
+    private static <K> Collection<List<HTMLParser>> groupBy(Collection<HTMLParser> parsers, Function<HTMLParser, K> key) {
+        var groups = new LinkedHashMap<K, List<HTMLParser>>();
+        for(var parser : parsers)
+            groups.computeIfAbsent(key.apply(parser), k -> new ArrayList<>()).add(parser);
+        return groups.values();
+    }
+}
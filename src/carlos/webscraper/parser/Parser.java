@@ -8,6 +8,7 @@ import java.io.Serializable;
  * The reason for this interface's existence is to emphasize which methods can be over-ridden
  * <ul>
  *     <li>{@link Parser#transform(String)}</li>
+ *     <li>{@link Parser#transform(CharSequence, StringBuilder)}</li>
  *     <li>{@link Parser#onAddFilter(String)}</li>
  * </ul>
  * It also provides default implementations for optional methods so that users of
@@ -40,6 +41,19 @@ public interface Parser extends Serializable {
         return html;
     }
 
+    /**
+     * Pre-processes the raw HTML into a view which is matched in place, without materializing a new {@link String}.<br/>
+     * Implement alongside {@link Parser#transform(String)} if the transformation can be written into the given buffer,
+     * which is reused for other pages once matching is done.
+     * The default implementation delegates to {@link Parser#transform(String)}, which costs no copy if it is not overridden.
+     * @param html raw HTML to be pre-processed.
+     * @param buffer empty buffer the transformed HTML may be written to.
+     * @return transformed HTML, either the buffer, the raw HTML or a new sequence.
+     */
+    default CharSequence transform(CharSequence html, StringBuilder buffer) {
+        return transform(html.toString());
+    }
+
     /**
      * Method which filters parsed results. <br/>
      * Implement if you want to filter certain results.
@@ -51,6 +65,44 @@ public interface Parser extends Serializable {
     }
 
     static String clearTags(String html) {
-        return html.replaceAll("<.*?>", "");
+        return clearTags(html, new StringBuilder(html.length())).toString();
+    }
+
+    /**
+     * Removes every tag from the HTML, in a single pass without regex. Same result as
+     * <code>html.replaceAll("&lt;.*?&gt;", "")</code>: a tag ends at the first '&gt;'
+     * and cannot span a line terminator.<br/>
+     * Script and style contents and character references are left as they are,
+     * use {@link TextExtractor} to retrieve the readable text of a page.
+     * @param html raw HTML.
+     * @param buffer buffer the text outside of tags is appended to.
+     * @return the buffer.
+     */
+    static StringBuilder clearTags(CharSequence html, StringBuilder buffer) {
+        int length = html.length();
+        int copyFrom = 0;
+        for(int i = 0; i < length; i++) {
+            if(html.charAt(i) != '<') continue;
+            int end = tagEnd(html, i + 1, length);
+            if(end < 0) continue;
+            buffer.append(html, copyFrom, i);
+            copyFrom = end + 1;
+            i = end;
+        }
+        return buffer.append(html, copyFrom, length);
+    }
+
+    /**
+     * @return index of the '&gt;' closing a tag opened just before from, -1 if a line terminator or the end comes first.
+     */
+    private static int tagEnd(CharSequence html, int from, int length) {
+        for(int i = from; i < length; i++) {
+            switch(html.charAt(i)) {
+                case '>': return i;
+                case '\n', '\r', '\u0085', '\u2028', '\u2029': return -1;
+                default:
+            }
+        }
+        return -1;
     }
 }
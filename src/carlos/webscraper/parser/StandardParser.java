@@ -8,8 +8,8 @@ import java.util.function.Predicate;
  * for use with WebScraperBuilder#of(StandardHTMLParser...) <br/>
  * <h2>Current Implementations:</h2>
  * <ul>
- *     <li><b>TEXT</b> - parses raw text, extend and overwrite it's {@link LimitedParser#onAddFilter(String)}
- *     for niche filtering purposes</li>
+ *     <li><b>TEXT</b> - parses sentences of the page's readable text, as extracted by {@link TextExtractor},
+ *     extend and overwrite it's {@link LimitedParser#onAddFilter(String)} for niche filtering purposes</li>
  * </ul>
  * @author Carlos Milkovic
  * @version a0.9
@@ -24,7 +24,12 @@ public enum StandardParser {
 
         @Override
         public String transform(String html) {
-            return Parser.clearTags(html);
+            return TextExtractor.extract(html);
+        }
+
+        @Override
+        public CharSequence transform(CharSequence html, StringBuilder buffer) {
+            return TextExtractor.extract(html, buffer);
         }
     });
 
@@ -89,6 +94,16 @@ public enum StandardParser {
                 return StandardParser.this.PARSER.transform(html);
             }
 
+            @Override
+            public CharSequence transform(CharSequence html, StringBuilder buffer) {
+                return StandardParser.this.PARSER.transform(html, buffer);
+            }
+
+            @Override
+            Object transformKey() {
+                return StandardParser.this;
+            }
+
             @Override
             public boolean onAddFilter(String element) {
                 return filter.test(element);
@@ -0,0 +1,255 @@
+package carlos.webscraper.parser;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Single-pass extractor of the readable text of an HTML page, without regex.<br/>
+ * <ul>
+ *     <li>Tags, comments, doctypes and processing instructions are dropped,
+ *     a '&gt;' within a quoted attribute value does not end a tag.</li>
+ *     <li>Contents of <code>&lt;script&gt;</code> and <code>&lt;style&gt;</code> elements are dropped.</li>
+ *     <li>Numeric and common named character references are decoded, unknown ones are kept as they are.</li>
+ *     <li>Block-level tags separate text, and every run of whitespace collapses into a single space,
+ *     so a sentence split over lines of the source or ending a paragraph is kept whole.</li>
+ * </ul>
+ * A '&lt;' which does not start a tag is kept as text.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see StandardParser#TEXT
+ */
+public final class TextExtractor {
+    private static final int MAX_ENTITY_LENGTH = 10;
+    private static final int MAX_KEY_LENGTH = 10;
+    private static final long SCRIPT = key("script");
+    private static final long STYLE = key("style");
+    private static final long[] BLOCK_TAGS = keys("address", "article", "aside", "blockquote", "body", "br",
+            "caption", "dd", "details", "div", "dl", "dt", "fieldset", "figcaption", "figure", "footer", "form",
+            "h1", "h2", "h3", "h4", "h5", "h6", "head", "header", "hr", "html", "li", "main", "nav", "ol", "option",
+            "p", "pre", "section", "summary", "table", "tbody", "td", "tfoot", "th", "thead", "title", "tr", "ul");
+    private static final Map<String, Integer> ENTITIES = Map.ofEntries(
+            Map.entry("amp", (int) '&'), Map.entry("lt", (int) '<'), Map.entry("gt", (int) '>'),
+            Map.entry("quot", (int) '"'), Map.entry("apos", (int) '\''), Map.entry("nbsp", 0xa0),
+            Map.entry("copy", 0xa9), Map.entry("reg", 0xae), Map.entry("deg", 0xb0), Map.entry("times", 0xd7),
+            Map.entry("laquo", 0xab), Map.entry("raquo", 0xbb), Map.entry("middot", 0xb7),
+            Map.entry("ndash", 0x2013), Map.entry("mdash", 0x2014), Map.entry("lsquo", 0x2018),
+            Map.entry("rsquo", 0x2019), Map.entry("ldquo", 0x201c), Map.entry("rdquo", 0x201d),
+            Map.entry("bull", 0x2022), Map.entry("hellip", 0x2026), Map.entry("euro", 0x20ac),
+            Map.entry("trade", 0x2122));
+
+    private TextExtractor() {}
+
+    /**
+     * @param html raw HTML.
+     * @return readable text of the HTML.
+     */
+    public static String extract(String html) {
+        return extract(html, new StringBuilder(html.length())).toString();
+    }
+
+    /**
+     * Appends the readable text of the HTML to the buffer.
+     * @param html raw HTML.
+     * @param buffer buffer the text is appended to.
+     * @return the buffer.
+     */
+    public static StringBuilder extract(CharSequence html, StringBuilder buffer) {
+        int length = html.length();
+        int start = buffer.length();
+        boolean space = false;
+        for(int i = 0; i < length; ) {
+            char c = html.charAt(i);
+            if(c == '<') {
+                int end = skipMarkup(html, i, length);
+                if(end > 0) {
+                    i = end;
+                    continue;
+                }
+                if(end < 0) {
+                    i = -end;
+                    space = true;
+                    continue;
+                }
+            }
+            int codePoint = c;
+            int next = i + 1;
+            if(c == '&') {
+                int semicolon = indexOf(html, ';', i + 2, Math.min(length, i + 2 + MAX_ENTITY_LENGTH));
+                int decoded = semicolon < 0 ? -1 : decode(html, i + 1, semicolon);
+                if(decoded >= 0) {
+                    codePoint = decoded;
+                    next = semicolon + 1;
+                }
+            }
+            if(isSpace(codePoint)) space = true;
+            else {
+                if(space && buffer.length() > start) buffer.append(' ');
+                space = false;
+                buffer.appendCodePoint(codePoint);
+            }
+            i = next;
+        }
+        return buffer;
+    }
+
+    /**
+     * Skips the markup starting at the '&lt;' at the given index.
+     * @return index following the markup, negated if it separates text, 0 if the '&lt;' does not start markup.
+     */
+    private static int skipMarkup(CharSequence html, int from, int length) {
+        if(from + 1 >= length) return 0;
+        char next = html.charAt(from + 1);
+        if(next == '!') {
+            if(startsWith(html, from + 2, "--")) {
+                int end = indexOf(html, "-->", from + 4, length);
+                return end < 0 ? length : end + 3;
+            }
+            return skipTag(html, from + 2, length);
+        }
+        if(next == '?') return skipTag(html, from + 2, length);
+        boolean closing = next == '/';
+        int nameStart = closing ? from + 2 : from + 1;
+        if(nameStart >= length || !isLetter(html.charAt(nameStart))) return 0;
+        int nameEnd = nameStart + 1;
+        while(nameEnd < length && isNameChar(html.charAt(nameEnd)))
+            nameEnd++;
+        long key = key(html, nameStart, nameEnd);
+        int end = skipTag(html, nameEnd, length);
+        if(!closing && (key == SCRIPT || key == STYLE))
+            return -skipRawText(html, end, length, nameStart, nameEnd);
+        return Arrays.binarySearch(BLOCK_TAGS, key) >= 0 ? -end : end;
+    }
+
+    /**
+     * @return index following the '&gt;' which ends the tag, ignoring those within quoted attribute values.
+     */
+    private static int skipTag(CharSequence html, int from, int length) {
+        char quote = 0;
+        boolean afterEquals = false;
+        for(int i = from; i < length; i++) {
+            char c = html.charAt(i);
+            if(quote != 0) {
+                if(c == quote) quote = 0;
+            }
+            else if(c == '>') return i + 1;
+            else if(c == '=') afterEquals = true;
+            else if((c == '"' || c == '\'') && afterEquals) quote = c;
+            else if(!isSpace(c)) afterEquals = false;
+        }
+        return length;
+    }
+
+    /**
+     * @return index following the end tag of the raw text element whose name is at [nameStart, nameEnd).
+     */
+    private static int skipRawText(CharSequence html, int from, int length, int nameStart, int nameEnd) {
+        int nameLength = nameEnd - nameStart;
+        for(int i = indexOf(html, "</", from, length); i >= 0; i = indexOf(html, "</", i + 2, length)) {
+            int end = i + 2 + nameLength;
+            if(end <= length && equalsIgnoreCase(html, i + 2, nameStart, nameLength)
+                    && (end == length || !isNameChar(html.charAt(end))))
+                return skipTag(html, end, length);
+        }
+        return length;
+    }
+
+    /**
+     * Decodes the character reference between '&amp;' and ';'.
+     * @return decoded code point, -1 if the reference is not known.
+     */
+    private static int decode(CharSequence html, int from, int to) {
+        if(html.charAt(from) != '#') {
+            var codePoint = ENTITIES.get(html.subSequence(from, to).toString());
+            return codePoint == null ? -1 : codePoint;
+        }
+        int radix = 10;
+        int i = from + 1;
+        if(i < to && (html.charAt(i) == 'x' || html.charAt(i) == 'X')) {
+            radix = 16;
+            i++;
+        }
+        if(i == to) return -1;
+        int codePoint = 0;
+        for(; i < to; i++) {
+            int digit = Character.digit(html.charAt(i), radix);
+            if(digit < 0) return -1;
+            codePoint = Math.min(codePoint * radix + digit, Character.MAX_CODE_POINT + 1);
+        }
+        if(codePoint == 0 || codePoint > Character.MAX_CODE_POINT
+                || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE))
+            return 0xfffd;
+        return codePoint;
+    }
+
+    /**
+     * Packs a lowercase tag name of up to {@link TextExtractor#MAX_KEY_LENGTH} letters and digits into a long,
+     * 6 bits per character, so tags are recognized without allocating their names.
+     * @return key of the name, -1 if it cannot be packed.
+     */
+    private static long key(CharSequence name, int from, int to) {
+        if(to - from > MAX_KEY_LENGTH) return -1;
+        long key = 0;
+        for(int i = from; i < to; i++) {
+            char c = name.charAt(i);
+            int code;
+            if(c >= 'a' && c <= 'z') code = c - 'a' + 1;
+            else if(c >= 'A' && c <= 'Z') code = c - 'A' + 1;
+            else if(c >= '0' && c <= '9') code = c - '0' + 27;
+            else return -1;
+            key = key << 6 | code;
+        }
+        return key;
+    }
+
+    private static long key(String name) {
+        return key(name, 0, name.length());
+    }
+
+    private static long[] keys(String... names) {
+        var keys = new long[names.length];
+        for(int i = 0; i < names.length; i++)
+            keys[i] = key(names[i]);
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private static boolean equalsIgnoreCase(CharSequence html, int from, int nameStart, int length) {
+        for(int i = 0; i < length; i++)
+            if(Character.toLowerCase(html.charAt(from + i)) != Character.toLowerCase(html.charAt(nameStart + i)))
+                return false;
+        return true;
+    }
+
+    private static boolean startsWith(CharSequence html, int from, String prefix) {
+        if(from + prefix.length() > html.length()) return false;
+        for(int i = 0; i < prefix.length(); i++)
+            if(html.charAt(from + i) != prefix.charAt(i)) return false;
+        return true;
+    }
+
+    private static int indexOf(CharSequence html, char c, int from, int to) {
+        for(int i = from; i < to; i++)
+            if(html.charAt(i) == c) return i;
+        return -1;
+    }
+
+    private static int indexOf(CharSequence html, String s, int from, int length) {
+        char first = s.charAt(0);
+        for(int i = from, last = length - s.length(); i <= last; i++)
+            if(html.charAt(i) == first && startsWith(html, i, s)) return i;
+        return -1;
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isNameChar(char c) {
+        return isLetter(c) || (c >= '0' && c <= '9') || c == '-' || c == ':' || c == '_';
+    }
+
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f' || c == 0xa0
+                || (c > 0x7f && Character.isWhitespace(c));
+    }
+}
@@ -1,9 +1,8 @@
 package carlos.webscraper.parser.link;
 
+import carlos.utilities.ParsedUrl;
 import carlos.webscraper.WebScraperBuilder;
 
-import java.util.regex.Pattern;
-
 /**
  * Patterns for restricting {@link LinkParser} to a certain language.
  * <h2>Supported languages:</h2>
@@ -19,7 +18,8 @@ import java.util.regex.Pattern;
  *     <li>ITALIAN</li>
  *     <li>DUTCH</li>
  * </ul>
- * For use with {@link WebScraperBuilder#restrictLanguage(LanguagePattern)}
+ * For use with {@link WebScraperBuilder#restrictLanguage(LanguagePattern...)}
+ * and {@link WebScraperBuilder#restrictPageLanguage(LanguagePattern...)}
  * @author Carlos Milkovic
  * @version 1.0
  * @see WebScraperBuilder
@@ -30,16 +30,47 @@ public enum LanguagePattern {
     GERMAN("de"),
     FRENCH("fr"),
     SPANISH("es"),
-    POLISH("po"),
+    POLISH("pl"),
     RUSSIAN("ru"),
     UKRAINIAN("uk"),
     ITALIAN("it"),
     DUTCH("nl");
 
-    final Pattern PATTERN;
+    final String CODE;
 
     LanguagePattern(String lang) {
-        this.PATTERN = Pattern.compile(String.format("\\.%s[./]|[./]%s\\.|/%s/", lang, lang, lang));
+        this.CODE = lang;
+    }
+
+    /**
+     * @return ISO 639-1 code of the language, e.g. "en".
+     */
+    public String code() {
+        return CODE;
+    }
+
+    /**
+     * Tests whether a label of the url's host, or a '.' or '/' separated part of its path, is the language code,
+     * e.g. <code>en.wikipedia.org</code>, <code>/en/</code> or <code>/index.en.html</code> for ENGLISH.
+     * @param url parsed url.
+     * @return true if the url is in this language.
+     */
+    boolean matches(ParsedUrl url) {
+        var host = url.host().name();
+        return containsPart(host, 0, host.length()) || containsPart(url.url(), url.pathStart(), url.queryStart());
+    }
+
+    private boolean containsPart(String s, int from, int to) {
+        for(int i = from; i + CODE.length() <= to; i++) {
+            if((i == from || isSeparator(s.charAt(i - 1))) && s.startsWith(CODE, i)
+                    && (i + CODE.length() == to || isSeparator(s.charAt(i + CODE.length()))))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '.' || c == '/';
     }
 
 }
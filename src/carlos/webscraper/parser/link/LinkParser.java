@@ -1,19 +1,19 @@
 package carlos.webscraper.parser.link;
 
+import carlos.utilities.Fingerprint;
+import carlos.utilities.FingerprintIndex;
+import carlos.utilities.ParsedUrl;
 import carlos.webscraper.*;
 import carlos.webscraper.parser.HTMLParser;
 
-import java.io.IOException;
 import java.io.Serial;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
-import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Objects;
 import java.util.Set;
 import java.util.regex.Pattern;
 
-import static java.nio.file.Files.newBufferedWriter;
-
 /**
  * Extension of the {@link HTMLParser} abstract class.
  * Used for parsing links and has an option to parse links
@@ -33,7 +33,10 @@ import static java.nio.file.Files.newBufferedWriter;
 public abstract class LinkParser extends HTMLParser {
     /**
      * Standard implementation of the {@link LinkParser}.<br/>
-     * Write a custom implementation if you are dissatisfied with the {@link LinkParser#pattern()}. <br/>
+     * Links are extracted with a {@link LinkScanner}, which also resolves relative links,
+     * rather than with the {@link LinkParser#pattern()}. <br/>
+     * Write a custom implementation if you are dissatisfied with the links it finds, custom implementations are
+     * matched with their {@link LinkParser#pattern()}. <br/>
      * REGEX: <code>(?<=href=")https?://[A-Za-z0-9./:_()\[\]{}-]+?(?=")</code>
      * @return a new instance of the standard implementation of {@link LinkParser}
      * @see LinkParser
@@ -52,16 +55,26 @@ public abstract class LinkParser extends HTMLParser {
             public long limit() {
                 return 10_000_000;
             }
+
+            @Override
+            public boolean scansLinks() {
+                return true;
+            }
         };
     }
 
     @Serial
     private static final long serialVersionUID = 1303388778823614737L;
-    private LanguagePattern languagePattern;
+    private final EnumSet<LanguagePattern> languagePatterns = EnumSet.noneOf(LanguagePattern.class);
+    /**
+     * @deprecated urls are verified with {@link ParsedUrl#parse(String)}.
+     */
+    @Deprecated
     public static final Pattern HTTP_PATTERN =
     Pattern.compile("https?://(www\\.)?[-a-zA-Z0-9@:%._+~#=]{1,256}\\.[a-zA-Z0-9()]{1,6}\\b([-a-zA-Z0-9()@:%_+.~#?&=]*)");
-    private final Pattern siteIdentifier = Pattern.compile("(?<=\\.)([A-Za-z_]+?)(?=[.])");
-    private boolean stayOnSite;
+    private String site;
+    private transient volatile FingerprintIndex visited;
+    private UrlCanonicalizer canonicalizer = UrlCanonicalizer.standard();
 
     /**
      * Creates a new instance of {@link LinkParser} with the {@link HTMLParser#NAME} field pre-set to "link"
@@ -71,62 +84,134 @@ public abstract class LinkParser extends HTMLParser {
         super("link");
     }
 
+    /**
+     * Filters links by site and language, if restricted, parsing each link once with {@link ParsedUrl}.
+     * @param element parsed link.
+     * @return false if the link is not on the site or in none of the languages this parser is restricted to.
+     */
     @Override
     public final boolean onAddFilter(String element) {
-        return  (!stayOnSite || matches(element, siteIdentifier))
-                && (languagePattern == null || matches(element, languagePattern.PATTERN));
+        if(site == null && languagePatterns.isEmpty()) return true;
+        var url = ParsedUrl.tryParse(element);
+        return url != null
+                && (site == null || site.equals(url.host().domain().name()))
+                && (languagePatterns.isEmpty() || matchesLanguage(url));
     }
 
-    private boolean matches(String element, Pattern pattern) {
-        return pattern.matcher(element).find();
+    private boolean matchesLanguage(ParsedUrl url) {
+        for(var languagePattern : languagePatterns)
+            if(languagePattern.matches(url)) return true;
+        return false;
     }
 
-    final public Path pathToVisited() {
-        return Paths.get("$visited$" + pathToContent());
+    /**
+     * Implement to return true if the links of a page should be extracted with a {@link LinkScanner}
+     * instead of being matched with the {@link LinkParser#pattern()}.
+     * @return false by default.
+     */
+    public boolean scansLinks() {
+        return false;
     }
 
-    final public Path pathToUnvisited(WebScraper scraper) {
-        return Paths.get(scraper + "$unvisited$" + super.pathToContent());
+    /**
+     * Extracts the links of a page, with a {@link LinkScanner} if {@link LinkParser#scansLinks()},
+     * otherwise with the {@link LinkParser#pattern()}. Links are filtered with {@link LinkParser#onAddFilter(String)}.
+     * @param html raw HTML of the page.
+     * @param url url of the page, relative links are resolved against it.
+     * @return links of the page.
+     */
+    public final Set<String> getLinks(CharSequence html, String url) {
+        if(scansLinks()) return LinkScanner.scan(html, url, this::onAddFilter);
+        return getContent(html.toString());
     }
 
-    public final synchronized void flushUnvisited(Collection<String> links, WebScraper webScraper) {
-        flushUnvisited(links, webScraper, openOption(pathToUnvisited(webScraper)));
+    final public Path pathToVisited() {
+        return Paths.get("$visited$" + pathToContent());
     }
 
-    public final synchronized void flushUnvisited(Collection<String> links, WebScraper webScraper, StandardOpenOption option) {
-        if(!links.isEmpty()) {
-            try (var w = newBufferedWriter(pathToUnvisited(webScraper), option)) {
-                for (var link : links) {
-                    w.write(link);
-                    w.newLine();
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-        links.clear();
+    /**
+     * @param scraper scraper the unvisited links belong to.
+     * @return {@link Path} to the directory holding the on-disk part of the scraper's unvisited links,
+     * the same for every run so saved links are picked up again.
+     */
+    final public Path pathToUnvisited(WebScraper scraper) {
+        return Paths.get(scraper + "$unvisited@" + NAME);
     }
 
     /**
-     * Adds the specified link to the visited links {@link HTMLParser#cache} <br/>
-     * and flushes the {@link HTMLParser#cache} if necessary.
-     * @param link link to be added to the {@link HTMLParser#cache}
+     * Adds the specified link to the set of visited links. <br/>
+     * Visited links are remembered as {@link Fingerprint}s of their {@link UrlCanonicalizer#key(String)}
+     * in a {@link FingerprintIndex} for the lifetime of this {@link LinkParser}.
+     * The {@link HTMLParser#cache} only buffers them for saving, and is flushed if necessary.
+     * @param link link to be added to the visited links.
      * @see ContentHandler
      * @see LinkParser
      */
     public final void addVisitedLink(String link) {
-        if(dataWithinLimit())
-            collected.addAndGet(cache.add(link) ? 1 : 0);
+        long fingerprint = Fingerprint.of(canonicalizer.key(link));
+        if(dataWithinLimit() && visited().add(fingerprint)) {
+            collected.incrementAndGet();
+            if(shouldSave) addToCache(link, fingerprint);
+        }
         if(cacheOverflowing()) flush(pathToVisited());
     }
 
     /**
-     * Enables site restriction filter for this {@link LinkParser}.
+     * @return memory used to remember visited links, in bytes.
+     * @see FingerprintIndex
+     */
+    public final long visitedMemoryFootprint() {
+        var index = visited;
+        return index != null ? index.memoryFootprint() : 0;
+    }
+
+    /**
+     * @return disk space used to remember visited links, in bytes.
+     * @see FingerprintIndex
+     */
+    public final long visitedDiskFootprint() {
+        var index = visited;
+        return index != null ? index.diskFootprint() : 0;
+    }
+
+    /**
+     * @return {@link Path} to the directory the visited index creates its own run directory in,
+     * indexes created at the same time may share it.
+     * @see FingerprintIndex
+     */
+    final public Path pathToVisitedIndex() {
+        return Paths.get("$visited-index$" + getDateTime() + "@" + NAME);
+    }
+
+    /**
+     * Fingerprints of the visited links, created on the first visited link rather than with the parser,
+     * so {@link LinkParser#limit()} is asked once subclasses are fully constructed, and parsers which are
+     * replaced before crawling never allocate it.
+     * The {@link carlos.utilities.BloomFilter} is sized for {@link LinkParser#limit()} links, up to
+     * {@link HTMLParser#MAX_BLOOM_SIZE}. Past that, more lookups go to disk but the answers remain exact.
+     */
+    private FingerprintIndex visited() {
+        var index = visited;
+        if(index == null) {
+            synchronized(this) {
+                if((index = visited) == null)
+                    visited = index = new FingerprintIndex(pathToVisitedIndex(), Math.min(Math.max(limit(), 1), MAX_BLOOM_SIZE));
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Enables site restriction filter for this {@link LinkParser}, only links within the registrable domain
+     * of the given url are accepted.
+     * @param url url of the site, usually the initial url.
+     * @throws IllegalArgumentException if the url is not a valid url.
+     * @see ParsedUrl.Host#domain()
      * @see WebScraperBuilder#build()
      * @see LinkParser
      */
-    public final void restrictToSite() {
-        this.stayOnSite = true;
+    public final void restrictToSite(String url) throws IllegalArgumentException {
+        this.site = ParsedUrl.parse(url).host().domain().name();
     }
 
     /**
@@ -136,19 +221,43 @@ public abstract class LinkParser extends HTMLParser {
      * @see LinkParser
      */
     public final boolean alreadyVisited(String link) {
-        return cache.contains(link);
+        var index = visited;
+        return index != null && index.contains(Fingerprint.of(canonicalizer.key(link)));
+    }
+
+    /**
+     * Sets the {@link UrlCanonicalizer} links are normalized and deduplicated with,
+     * {@link UrlCanonicalizer#standard()} by default.
+     * @param canonicalizer canonicalizer to be used.
+     * @throws NullPointerException if the canonicalizer is null.
+     * @see WebScraperBuilder#withUrlCanonicalizer(UrlCanonicalizer)
+     * @see LinkParser
+     */
+    public final void canonicalizeWith(UrlCanonicalizer canonicalizer) throws NullPointerException {
+        this.canonicalizer = Objects.requireNonNull(canonicalizer);
+    }
+
+    /**
+     * Normalizes a discovered link before it is tested against the visited links and queued.
+     * @param link absolute link.
+     * @return canonical form of the link.
+     * @see UrlCanonicalizer#canonicalize(String)
+     */
+    public final String canonicalize(String link) {
+        return canonicalizer.canonicalize(link);
     }
 
     /**
      * Enables language restriction filter for this {@link LinkParser}.
+     * Links in any of the added languages are accepted.
      * @param languagePattern pattern which to apply.
      * @see LanguagePattern
-     * @see WebScraperBuilder#restrictLanguage(LanguagePattern)
+     * @see WebScraperBuilder#restrictLanguage(LanguagePattern...)
      * @see WebScraperBuilder#build()
      * @see LinkParser
      */
     public final void addLanguageFilter(LanguagePattern languagePattern) {
-        this.languagePattern = languagePattern;
+        this.languagePatterns.add(languagePattern);
     }
 
     /**
@@ -158,7 +267,6 @@ public abstract class LinkParser extends HTMLParser {
      * @see LinkParser
      */
     public final void verify(String url) throws IllegalArgumentException {
-        if(!HTTP_PATTERN.matcher(url).matches())
-        throw new IllegalArgumentException(url + " is not a valid url.");
+        ParsedUrl.parse(url);
     }
 }
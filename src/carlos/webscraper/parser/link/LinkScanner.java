@@ -0,0 +1,275 @@
+package carlos.webscraper.parser.link;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Single-pass scanner of the links of an HTML page, used by {@link LinkParser#newStandardLinkParser()}.<br/>
+ * <ul>
+ *     <li>Finds the <code>href</code> attributes of <code>&lt;a&gt;</code> and <code>&lt;area&gt;</code> tags,
+ *     whose values may be double quoted, single quoted or unquoted.</li>
+ *     <li>Resolves relative links against the page url, or against the <code>href</code> of a
+ *     <code>&lt;base&gt;</code> tag once one is found.</li>
+ *     <li>Only keeps http and https links, without their fragments, as a fragment points into the same page.</li>
+ *     <li>Decodes <code>&amp;amp;</code>, drops tabs and line breaks and percent-encodes
+ *     characters which are not allowed in a url.</li>
+ * </ul>
+ * Links are built in buffers reused for the whole page, a link only costs the {@link String} it is emitted as.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see LinkParser
+ */
+public final class LinkScanner {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final StringBuilder reference = new StringBuilder(256);
+    private final StringBuilder link = new StringBuilder(256);
+    private String base;
+    private int authorityEnd;
+    private int pathEnd;
+    private int directoryEnd;
+
+    private LinkScanner(String url) {
+        rebase(url);
+    }
+
+    /**
+     * Scans the page for links.
+     * @param html raw HTML of the page.
+     * @param url url of the page, null if relative links should be ignored.
+     * @param filter filter each resolved link has to pass.
+     * @return resolved links of the page which passed the filter.
+     */
+    public static Set<String> scan(CharSequence html, String url, Predicate<String> filter) {
+        var links = new HashSet<String>();
+        var scanner = new LinkScanner(url);
+        int length = html.length();
+        for(int i = 0; i < length; i++) {
+            if(html.charAt(i) != '<') continue;
+            int nameEnd = tagNameEnd(html, i + 1, length);
+            if(nameEnd < 0) continue;
+            boolean isBase = nameEnd - i - 1 == 4 && Character.toLowerCase(html.charAt(i + 1)) == 'b';
+            i = scanner.scanAttributes(html, nameEnd, length, isBase, links, filter) - 1;
+        }
+        return links;
+    }
+
+    /**
+     * @return index following the name of an <code>a</code>, <code>area</code> or <code>base</code> tag
+     * starting at the given index, -1 if no such tag starts there.
+     */
+    private static int tagNameEnd(CharSequence html, int from, int length) {
+        int end = from;
+        while(end < length && isLetter(html.charAt(end)))
+            end++;
+        if(end == length || !isSpace(html.charAt(end))) return -1;
+        return switch(end - from) {
+            case 1 -> equalsIgnoreCase(html, from, "a") ? end : -1;
+            case 4 -> equalsIgnoreCase(html, from, "area") || equalsIgnoreCase(html, from, "base") ? end : -1;
+            default -> -1;
+        };
+    }
+
+    /**
+     * Reads the attributes of a tag, adding the link of its <code>href</code>
+     * or, for a <code>&lt;base&gt;</code> tag, resolving every following relative link against it.
+     * @return index following the tag.
+     */
+    private int scanAttributes(CharSequence html, int from, int length, boolean isBase,
+                               Set<String> links, Predicate<String> filter) {
+        int i = from;
+        while(i < length) {
+            char c = html.charAt(i);
+            if(c == '>') return i + 1;
+            if(isSpace(c) || c == '/') {
+                i++;
+                continue;
+            }
+            int nameStart = i;
+            while(i < length && !isSpace(c = html.charAt(i)) && c != '=' && c != '>' && c != '/')
+                i++;
+            boolean isHref = i - nameStart == 4 && equalsIgnoreCase(html, nameStart, "href");
+            while(i < length && isSpace(html.charAt(i)))
+                i++;
+            if(i == length || html.charAt(i) != '=') continue;
+            i++;
+            while(i < length && isSpace(html.charAt(i)))
+                i++;
+            if(i == length) break;
+            int valueStart, valueEnd;
+            char quote = html.charAt(i);
+            if(quote == '"' || quote == '\'') {
+                valueStart = ++i;
+                while(i < length && html.charAt(i) != quote)
+                    i++;
+                valueEnd = i;
+                if(i < length) i++;
+            } else {
+                valueStart = i;
+                while(i < length && !isSpace(c = html.charAt(i)) && c != '>')
+                    i++;
+                valueEnd = i;
+            }
+            if(!isHref || !resolve(html, valueStart, valueEnd)) continue;
+            var resolved = link.toString();
+            if(isBase) {
+                if(base == null || !base.equals(resolved)) rebase(resolved);
+            }
+            else if(filter.test(resolved)) links.add(resolved);
+        }
+        return length;
+    }
+
+    private void rebase(String url) {
+        base = url;
+        if(url == null) return;
+        int schemeEnd = url.indexOf("://");
+        if(schemeEnd < 0) {
+            base = null;
+            return;
+        }
+        authorityEnd = indexOfAny(url, "/?#", schemeEnd + 3, url.length());
+        pathEnd = indexOfAny(url, "?#", authorityEnd, url.length());
+        directoryEnd = url.lastIndexOf('/', pathEnd - 1) + 1;
+        if(directoryEnd <= authorityEnd) directoryEnd = authorityEnd;
+    }
+
+    /**
+     * Resolves the reference at [from, to) of the HTML against the base into {@link LinkScanner#link}.
+     * @return false if the reference is not an http or https link, or no base is known for a relative one.
+     */
+    private boolean resolve(CharSequence html, int from, int to) {
+        while(from < to && isSpace(html.charAt(from)))
+            from++;
+        while(to > from && isSpace(html.charAt(to - 1)))
+            to--;
+        copyReference(html, from, to);
+        int length = reference.length();
+        if(length == 0) return false;
+        link.setLength(0);
+        int schemeEnd = schemeEnd(reference);
+        if(schemeEnd >= 0) {
+            if(!(schemeEnd == 4 && startsWithIgnoreCase(reference, "http"))
+                    && !(schemeEnd == 5 && startsWithIgnoreCase(reference, "https")))
+                return false;
+            for(int i = 0; i < schemeEnd; i++)
+                link.append(Character.toLowerCase(reference.charAt(i)));
+            link.append(reference, schemeEnd, length);
+            if(link.indexOf("://") != schemeEnd) return false;
+            int pathStart = schemeEnd + 3;
+            while(pathStart < link.length() && link.charAt(pathStart) != '/' && link.charAt(pathStart) != '?')
+                pathStart++;
+            removeDotSegments(link, pathStart);
+            return true;
+        }
+        if(base == null) return false;
+        if(length > 1 && reference.charAt(0) == '/' && reference.charAt(1) == '/') {
+            link.append(base, 0, base.indexOf(':') + 1).append(reference);
+            return true;
+        }
+        switch(reference.charAt(0)) {
+            case '/' -> link.append(base, 0, authorityEnd);
+            case '?' -> {
+                link.append(base, 0, pathEnd).append(reference);
+                return true;
+            }
+            default -> {
+                link.append(base, 0, directoryEnd);
+                if(directoryEnd == authorityEnd) link.append('/');
+            }
+        }
+        link.append(reference);
+        removeDotSegments(link, authorityEnd);
+        return true;
+    }
+
+    /**
+     * Copies the reference into {@link LinkScanner#reference} up to its fragment, decoding <code>&amp;amp;</code>,
+     * dropping tabs and line breaks and percent-encoding characters not allowed in a url.
+     */
+    private void copyReference(CharSequence html, int from, int to) {
+        reference.setLength(0);
+        for(int i = from; i < to; i++) {
+            char c = html.charAt(i);
+            switch(c) {
+                case '#' -> { return; }
+                case '\t', '\n', '\r' -> {}
+                case '&' -> {
+                    reference.append(c);
+                    if(i + 4 < to && html.charAt(i + 1) == 'a' && html.charAt(i + 2) == 'm'
+                            && html.charAt(i + 3) == 'p' && html.charAt(i + 4) == ';')
+                        i += 4;
+                }
+                case ' ', '"', '<', '>', '\\', '^', '`', '{', '|', '}' ->
+                        reference.append('%').append(HEX[c >>> 4]).append(HEX[c & 0xf]);
+                default -> reference.append(c);
+            }
+        }
+    }
+
+    /**
+     * @return length of the scheme of the reference, -1 if it is relative.
+     */
+    private static int schemeEnd(CharSequence reference) {
+        if(!isLetter(reference.charAt(0))) return -1;
+        for(int i = 1; i < reference.length(); i++) {
+            char c = reference.charAt(i);
+            if(c == ':') return i;
+            if(!isLetter(c) && !(c >= '0' && c <= '9') && c != '+' && c != '-' && c != '.') return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Removes the "." and ".." segments of the path starting at the given index, in place.
+     */
+    private static void removeDotSegments(StringBuilder url, int pathStart) {
+        int end = url.indexOf("?", pathStart);
+        if(end < 0) end = url.length();
+        int dot = url.indexOf("/.", pathStart);
+        if(dot < 0 || dot >= end) return;
+        int write = pathStart;
+        for(int read = pathStart; read < end; ) {
+            int next = read + 1;
+            while(next < end && url.charAt(next) != '/')
+                next++;
+            int segment = next - read - 1;
+            boolean current = segment == 1 && url.charAt(read + 1) == '.';
+            boolean parent = segment == 2 && url.charAt(read + 1) == '.' && url.charAt(read + 2) == '.';
+            if(parent)
+                while(write > pathStart && url.charAt(--write) != '/');
+            if(current || parent) {
+                if(next == end) url.setCharAt(write++, '/');
+            }
+            else for(int i = read; i < next; i++)
+                url.setCharAt(write++, url.charAt(i));
+            read = next;
+        }
+        url.delete(write, end);
+    }
+
+    private static int indexOfAny(String s, String chars, int from, int to) {
+        for(int i = from; i < to; i++)
+            if(chars.indexOf(s.charAt(i)) >= 0) return i;
+        return to;
+    }
+
+    private static boolean equalsIgnoreCase(CharSequence html, int from, String lowercase) {
+        for(int i = 0; i < lowercase.length(); i++)
+            if(Character.toLowerCase(html.charAt(from + i)) != lowercase.charAt(i)) return false;
+        return true;
+    }
+
+    private static boolean startsWithIgnoreCase(CharSequence s, String lowercase) {
+        return s.length() >= lowercase.length() && equalsIgnoreCase(s, 0, lowercase);
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+    }
+}
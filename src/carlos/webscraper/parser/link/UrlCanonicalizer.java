@@ -0,0 +1,192 @@
+package carlos.webscraper.parser.link;
+
+import carlos.utilities.ParsedUrl;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Normalizes discovered links so that urls which only differ in form are fetched and remembered once.<br/>
+ * Always lowercases the scheme and host, drops a trailing dot of the host, the default port and an empty query,
+ * gives an empty path a '/' and uppercases percent-encodings. The rest is configurable with {@link Rule}s.
+ * <ul>
+ *     <li>{@link UrlCanonicalizer#canonicalize(String)} applies the rules which keep the url fetchable,
+ *     it is run once on every discovered link before it reaches the frontier.</li>
+ *     <li>{@link UrlCanonicalizer#key(String)} additionally applies the rules which only hold for deduplication,
+ *     e.g. http and https versions of a page, and is what the visited links are remembered by.</li>
+ * </ul>
+ * Urls are parsed with {@link ParsedUrl}, so hosts come lowercased from its interned host table,
+ * and urls which are not absolute http or https urls are left as they are.
+ * @author Carlos Milkovic
+ * @version 1.0
+ * @see LinkParser#canonicalizeWith(UrlCanonicalizer)
+ */
+public final class UrlCanonicalizer implements Serializable {
+    @Serial
+    private static final long serialVersionUID = -3016826180385771406L;
+    private static final String TRACKING_PREFIX = "utm_";
+    private static final Set<String> TRACKING_PARAMETERS = Set.of("fbclid", "gclid", "dclid", "msclkid", "yclid",
+            "igshid", "mc_cid", "mc_eid", "_ga", "_gl");
+    private static final Set<String> SESSION_PARAMETERS = Set.of("jsessionid", "phpsessid", "aspsessionid",
+            "cfid", "cftoken");
+    private static final String SESSION_PATH_PARAMETER = ";jsessionid=";
+
+    /**
+     * Configurable normalizations.
+     * <ul>
+     *     <li>REMOVE_FRAGMENT - drops the #fragment, which points into the same page</li>
+     *     <li>SORT_QUERY - sorts query parameters, so their order does not matter, deduplication only,
+     *     as some servers read parameters in order</li>
+     *     <li>REMOVE_TRACKING_PARAMETERS - drops utm_* parameters and click identifiers such as fbclid or gclid</li>
+     *     <li>REMOVE_SESSION_IDS - drops the session parameters of common servers, jsessionid, phpsessid,
+     *     aspsessionid, cfid and cftoken, and ;jsessionid= path parameters. Generic names such as sid
+     *     also name content on some sites, pass them to
+     *     {@link UrlCanonicalizer#UrlCanonicalizer(Set, Rule...)} where they are known to be sessions</li>
+     *     <li>IGNORE_SCHEME - http and https versions of a url are the same page, deduplication only</li>
+     *     <li>IGNORE_WWW - hosts with and without a leading "www." are the same host, deduplication only</li>
+     *     <li>IGNORE_TRAILING_SLASH - paths with and without a trailing '/' are the same page, deduplication only</li>
+     * </ul>
+     */
+    public enum Rule {
+        REMOVE_FRAGMENT,
+        SORT_QUERY,
+        REMOVE_TRACKING_PARAMETERS,
+        REMOVE_SESSION_IDS,
+        IGNORE_SCHEME,
+        IGNORE_WWW,
+        IGNORE_TRAILING_SLASH
+    }
+
+    private final EnumSet<Rule> rules;
+    private final HashSet<String> removedParameters;
+
+    /**
+     * @param rules normalizations to be applied on top of the ones which are always applied.
+     */
+    public UrlCanonicalizer(Rule... rules) {
+        this(Set.of(), rules);
+    }
+
+    /**
+     * @param removedParameters names of further query parameters to be dropped, compared ignoring case.
+     * @param rules normalizations to be applied on top of the ones which are always applied.
+     * @throws NullPointerException if any of the parameter names is null.
+     */
+    public UrlCanonicalizer(Set<String> removedParameters, Rule... rules) throws NullPointerException {
+        this.rules = rules.length == 0 ? EnumSet.noneOf(Rule.class) : EnumSet.copyOf(Arrays.asList(rules));
+        this.removedParameters = new HashSet<>();
+        for(var name : removedParameters)
+            this.removedParameters.add(name.toLowerCase(Locale.ROOT));
+        if(this.rules.contains(Rule.REMOVE_TRACKING_PARAMETERS)) this.removedParameters.addAll(TRACKING_PARAMETERS);
+        if(this.rules.contains(Rule.REMOVE_SESSION_IDS)) this.removedParameters.addAll(SESSION_PARAMETERS);
+    }
+
+    /**
+     * @return a {@link UrlCanonicalizer} applying every {@link Rule}.
+     */
+    public static UrlCanonicalizer standard() {
+        return new UrlCanonicalizer(Rule.values());
+    }
+
+    /**
+     * @param url absolute url.
+     * @return url normalized by the rules which keep it fetchable, the url itself if it cannot be parsed.
+     */
+    public String canonicalize(String url) {
+        return normalize(url, false);
+    }
+
+    /**
+     * @param url absolute url.
+     * @return key equal for every url considered the same page, the url itself if it cannot be parsed.
+     */
+    public String key(String url) {
+        return normalize(url, true);
+    }
+
+    private String normalize(String url, boolean forKey) {
+        var parsed = ParsedUrl.tryParse(url);
+        if(parsed == null) return url;
+        int length = url.length();
+        int fragmentStart = parsed.fragmentStart();
+        int queryStart = parsed.queryStart();
+        var sb = new StringBuilder(length);
+        if(!(forKey && rules.contains(Rule.IGNORE_SCHEME)))
+            sb.append(parsed.scheme()).append(':');
+        sb.append("//").append(url, url.indexOf("://") + 3, parsed.hostStart());
+        var host = parsed.host().name();
+        int skip = forKey && rules.contains(Rule.IGNORE_WWW) && host.startsWith("www.") ? 4 : 0;
+        sb.append(host, skip, host.length());
+        if(parsed.hasExplicitPort() && parsed.port() != (parsed.isSecure() ? 443 : 80))
+            sb.append(url, parsed.hostEnd(), parsed.pathStart());
+        int pathStart = sb.length();
+        appendPath(sb, url, parsed.pathStart(), queryStart);
+        if(forKey && rules.contains(Rule.IGNORE_TRAILING_SLASH)
+                && sb.length() - pathStart > 1 && sb.charAt(sb.length() - 1) == '/')
+            sb.setLength(sb.length() - 1);
+        if(queryStart < fragmentStart) appendQuery(sb, url, queryStart + 1, fragmentStart, forKey);
+        if(fragmentStart < length && !rules.contains(Rule.REMOVE_FRAGMENT))
+            sb.append(url, fragmentStart, length);
+        return sb.toString();
+    }
+
+    private void appendPath(StringBuilder sb, String url, int from, int to) {
+        if(from == to) {
+            sb.append('/');
+            return;
+        }
+        boolean removeSession = rules.contains(Rule.REMOVE_SESSION_IDS);
+        for(int i = from; i < to; i++) {
+            char c = url.charAt(i);
+            if(c == ';' && removeSession
+                    && url.regionMatches(true, i, SESSION_PATH_PARAMETER, 0, SESSION_PATH_PARAMETER.length())) {
+                while(i + 1 < to && url.charAt(i + 1) != '/')
+                    i++;
+                continue;
+            }
+            if(c == '%' && i + 2 < to) {
+                sb.append(c).append(Character.toUpperCase(url.charAt(i + 1)))
+                        .append(Character.toUpperCase(url.charAt(i + 2)));
+                i += 2;
+                continue;
+            }
+            sb.append(c);
+        }
+    }
+
+    private void appendQuery(StringBuilder sb, String url, int from, int to, boolean forKey) {
+        boolean sort = forKey && rules.contains(Rule.SORT_QUERY);
+        boolean removeTracking = rules.contains(Rule.REMOVE_TRACKING_PARAMETERS);
+        if(!sort && !removeTracking && removedParameters.isEmpty()) {
+            if(from < to) sb.append('?').append(url, from, to);
+            return;
+        }
+        var parameters = new ArrayList<String>();
+        for(int start = from; start < to; ) {
+            int end = url.indexOf('&', start, to);
+            if(end < 0) end = to;
+            if(end > start && !isRemoved(url, start, end, removeTracking))
+                parameters.add(url.substring(start, end));
+            start = end + 1;
+        }
+        if(parameters.isEmpty()) return;
+        if(sort) Collections.sort(parameters);
+        sb.append('?').append(parameters.get(0));
+        for(int i = 1; i < parameters.size(); i++)
+            sb.append('&').append(parameters.get(i));
+    }
+
+    private boolean isRemoved(String url, int start, int end, boolean removeTracking) {
+        int nameEnd = url.indexOf('=', start, end);
+        if(nameEnd < 0) nameEnd = end;
+        if(removeTracking && url.regionMatches(true, start, TRACKING_PREFIX, 0, TRACKING_PREFIX.length())) return true;
+        return !removedParameters.isEmpty()
+                && removedParameters.contains(url.substring(start, nameEnd).toLowerCase(Locale.ROOT));
+    }
+
+    @Override
+    public String toString() {
+        return "UrlCanonicalizer" + rules;
+    }
+}
@@ -1,2 +1,3 @@
 module CS210.Project {
+    requires java.net.http;
 }
\ No newline at end of file